@@ -49,20 +49,24 @@ jmh {
     warmupIterations = 2
     iterations = 3
     fork = 1
+    jvmArgs.addAll("--enable-preview", "--add-modules", "jdk.incubator.vector", "--enable-native-access=ALL-UNNAMED")
 }
 
 
 
 tasks.withType<JavaCompile>().configureEach {
     options.compilerArgs.add("--enable-preview")
+    // StructuralScanner uses the Vector API when present and falls back to SWAR otherwise
+    options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
 }
 
+// PageCacheAdvisor calls posix_fadvise through the foreign function API
 tasks.withType<Test>().configureEach {
-    jvmArgs("--enable-preview")
+    jvmArgs("--enable-preview", "--add-modules", "jdk.incubator.vector", "--enable-native-access=ALL-UNNAMED")
 }
 
 tasks.withType<JavaExec>().configureEach {
-    jvmArgs("--enable-preview")
+    jvmArgs("--enable-preview", "--add-modules", "jdk.incubator.vector", "--enable-native-access=ALL-UNNAMED")
 }
 
 
@@ -1,6 +1,8 @@
 package reactive.async.csv;
 
 import concurrent.csv.queue.ChunkedFileProcessor;
+import concurrent.csv.queue.CsvEngine;
+import concurrent.csv.queue.ProcessorOptions;
 import concurrent.csv.virtual.ParallelCsvParser;
 import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.infra.Blackhole;
@@ -19,6 +21,7 @@ import java.util.concurrent.TimeUnit;
 public class ChunkedFileProcessorBenchmark {
 
     private Path tempFile;
+    private CsvEngine engine;
 
     @Setup(Level.Trial)
     public void setup() throws IOException {
@@ -35,7 +38,7 @@ public class ChunkedFileProcessorBenchmark {
             }
         }
 
-
+        engine = new CsvEngine(64 * 1024, 16, new ProcessorOptions());
     }
 
     @Benchmark
@@ -44,8 +47,14 @@ public class ChunkedFileProcessorBenchmark {
         processor.run();
     }
 
+    @Benchmark
+    public void benchmarkCsvParsingWithEngine(Blackhole bh) throws Exception {
+        engine.submit(tempFile, (result) -> bh.consume(result)).join();
+    }
+
     @TearDown(Level.Trial)
     public void cleanup() throws IOException {
+        engine.close();
         //Files.deleteIfExists(tempFile);
     }
 }
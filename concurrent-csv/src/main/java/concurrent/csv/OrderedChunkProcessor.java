@@ -1,5 +1,7 @@
 package concurrent.csv;
 
+import concurrent.csv.queue.BufferPool;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
@@ -19,7 +21,9 @@ public class OrderedChunkProcessor {
             Consumer<R> downstream
     ) throws IOException, InterruptedException {
 
-        BlockingQueue<StructuredTaskScope.Subtask<R>> inFlight = new ArrayBlockingQueue<>(maxConcurrent);
+        BlockingQueue<InFlight<R>> inFlight = new ArrayBlockingQueue<>(maxConcurrent);
+        // queued tasks + the one being emitted + the one being read
+        BufferPool bufferPool = new BufferPool(chunkSize, maxConcurrent + 2);
 
         try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ);
              var scope = new StructuredTaskScope.ShutdownOnFailure()) {
@@ -28,10 +32,13 @@ public class OrderedChunkProcessor {
             Thread.startVirtualThread(() -> {
                 while (true) {
                     try {
-                        var subtask = inFlight.take();
-                        StructuredTaskScope.Subtask.State state = subtask.state();
-                        R result = subtask.get(); // blocks until done
-                        downstream.accept(result);
+                        var next = inFlight.take();
+                        try {
+                            R result = next.subtask().get(); // blocks until done
+                            downstream.accept(result);
+                        } finally {
+                            next.lease().release();
+                        }
                     } catch (InterruptedException e) {
                         Thread.currentThread().interrupt();
                         break;
@@ -47,13 +54,14 @@ public class OrderedChunkProcessor {
 
             while (position < fileSize) {
                 int size = (int) Math.min(chunkSize, fileSize - position);
-                ByteBuffer buffer = ByteBuffer.allocate(size);
+                BufferPool.Lease lease = bufferPool.acquire(); // blocks until the consumer recycled a buffer
+                ByteBuffer buffer = lease.buffer().limit(size);
                 channel.read(buffer, position);
                 buffer.flip();
                 position += size;
 
                 var subtask = scope.fork(() -> processChunk.apply(buffer));
-                inFlight.put(subtask); // blocks if queue is full
+                inFlight.put(new InFlight<>(subtask, lease)); // blocks if queue is full
             }
 
             scope.join();
@@ -63,6 +71,8 @@ public class OrderedChunkProcessor {
         }
     }
 
+    private record InFlight<R>(StructuredTaskScope.Subtask<R> subtask, BufferPool.Lease lease) {}
+
     public static void main(String[] args) throws Exception {
         Path path = Paths.get("D:/tmp/sandbox/input-1.txt");
         int chunkSize = 1024;
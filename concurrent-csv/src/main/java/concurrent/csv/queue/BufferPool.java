@@ -0,0 +1,120 @@
+package concurrent.csv.queue;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of equally sized direct buffers.
+ * <p>
+ * Buffers are created lazily up to {@code maxBuffers} and afterwards recycled, so a processor running in steady state
+ * allocates no buffers at all and its buffer memory never exceeds {@code bufferSize * maxBuffers}. {@link #acquire()}
+ * blocks while every buffer is in use, which throttles the reader to the speed of the consumer. Buffers can be
+ * aligned to a block size for direct I/O.
+ * <p>
+ * The pool also recycles the {@link StructuralIndex} a worker tokenizes a chunk with. An index is only held while a
+ * chunk is parsed, so there are never more of them than parse workers.
+ */
+public class BufferPool {
+
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final int alignment;
+    private final BlockingQueue<ByteBuffer> free;
+    private final AtomicInteger created = new AtomicInteger();
+    private final ConcurrentLinkedQueue<StructuralIndex> indexes = new ConcurrentLinkedQueue<>();
+
+    public BufferPool(int bufferSize, int maxBuffers) {
+        this(bufferSize, maxBuffers, 1);
+    }
+
+    public BufferPool(int bufferSize, int maxBuffers, int alignment) {
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+        this.alignment = alignment;
+        this.free = new ArrayBlockingQueue<>(maxBuffers);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public int getMaxBuffers() {
+        return maxBuffers;
+    }
+
+    public int getCreatedBuffers() {
+        return created.get();
+    }
+
+    public Lease acquire() throws InterruptedException {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            int count = created.get();
+            while (count < maxBuffers) {
+                if (created.compareAndSet(count, count + 1)) {
+                    return new Lease(allocate());
+                }
+                count = created.get();
+            }
+            buffer = free.take();
+        }
+        return new Lease(buffer.clear());
+    }
+
+    private ByteBuffer allocate() {
+        if (alignment <= 1) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        return ByteBuffer.allocateDirect(bufferSize + 2 * alignment).alignedSlice(alignment).slice(0, bufferSize);
+    }
+
+    private void recycle(ByteBuffer buffer) {
+        free.offer(buffer);
+    }
+
+    /**
+     * An empty index, sized for the structural characters of a typical buffer and growing beyond that as needed.
+     */
+    StructuralIndex acquireIndex() {
+        StructuralIndex index = indexes.poll();
+        if (index == null) {
+            return new StructuralIndex(bufferSize >> 3);
+        }
+        index.clear();
+        return index;
+    }
+
+    void releaseIndex(StructuralIndex index) {
+        indexes.offer(index);
+    }
+
+    /**
+     * A pooled buffer with a reference count. The buffer goes back to the pool once every holder has released it.
+     */
+    public final class Lease {
+        private final ByteBuffer buffer;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Lease(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        public Lease retain() {
+            references.incrementAndGet();
+            return this;
+        }
+
+        public void release() {
+            if (references.decrementAndGet() == 0) {
+                recycle(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package concurrent.csv.queue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link CharSequence} view over a range of UTF-8 encoded bytes.
+ * <p>
+ * Pure ASCII ranges are served straight from the bytes. Only ranges containing multibyte sequences are decoded, and
+ * only once something actually asks for their characters. A slice can be re-pointed with {@link #wrap} so one
+ * instance can be reused for every field of a chunk.
+ */
+public final class ByteSlice implements CharSequence {
+
+    private ByteBuffer buffer;
+    private int start;
+    private int end;
+    private int ascii; // 0 = unknown, 1 = ascii, 2 = non ascii
+    private String decoded;
+
+    public ByteSlice() {
+    }
+
+    public ByteSlice(ByteBuffer buffer, int start, int end) {
+        wrap(buffer, start, end);
+    }
+
+    public ByteSlice wrap(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+        this.ascii = 0;
+        this.decoded = null;
+        return this;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    public int byteLength() {
+        return end - start;
+    }
+
+    public byte byteAt(int index) {
+        return buffer.get(start + index);
+    }
+
+    public boolean isAscii() {
+        if (ascii == 0) {
+            ascii = isAscii(buffer, start, end) ? 1 : 2;
+        }
+        return ascii == 1;
+    }
+
+    @Override
+    public int length() {
+        return isAscii() ? end - start : decoded().length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return isAscii() ? (char) buffer.get(start + index) : decoded().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return isAscii() ? new ByteSlice(buffer, start + from, start + to) : decoded().subSequence(from, to);
+    }
+
+    @Override
+    public String toString() {
+        return decoded();
+    }
+
+    private String decoded() {
+        if (decoded == null) {
+            decoded = decode(buffer, start, end);
+        }
+        return decoded;
+    }
+
+    public static String decode(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static boolean isAscii(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compares the bytes against an ASCII literal, ignoring ASCII case.
+     */
+    public static boolean equalsIgnoreCaseAscii(ByteBuffer buffer, int start, int end, String literal) {
+        if (end - start != literal.length()) return false;
+        for (int i = 0; i < literal.length(); i++) {
+            int b = buffer.get(start + i);
+            int c = literal.charAt(i);
+            if (b != c) {
+                int lower = b | 0x20;
+                if (lower != (c | 0x20) || lower < 'a' || lower > 'z') return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,61 @@
+package concurrent.csv.queue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Progress of a run that the consumer has fully acknowledged: everything before {@code byteOffset} was delivered in
+ * order and the consumer returned. {@code rowNumber} is the number of rows before the offset and {@code lineNumber}
+ * the file line the offset starts on, so a resumed run continues the numbering of the original one.
+ */
+public record Checkpoint(long byteOffset, long rowNumber, long lineNumber) {
+
+    public static final Checkpoint START = new Checkpoint(0, 0, 1);
+
+    private static final int BYTES = 3 * Long.BYTES;
+
+    /**
+     * Replaces the checkpoint file without ever leaving a torn one behind: the new state is forced to disk in a
+     * temporary file which is then atomically moved over the old one.
+     */
+    public void write(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(BYTES).putLong(byteOffset).putLong(rowNumber).putLong(lineNumber).flip();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Progress once the consumer has acknowledged {@code result} and every chunk before it.
+     */
+    static Checkpoint after(ChunkedFileProcessor.ChunkResult result) {
+        ColumnarRows rows = result.rows();
+        return new Checkpoint(result.fileOffset() + result.buffer().remaining(), result.firstRowNumber() + rows.recordCount(),
+                result.firstLineNumber() + rows.recordCount() + rows.quotedLineBreaks());
+    }
+
+    public static Optional<Checkpoint> read(Path file) throws IOException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.remaining() != BYTES) {
+                return Optional.empty();
+            }
+            return Optional.of(new Checkpoint(buffer.getLong(), buffer.getLong(), buffer.getLong()));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+}
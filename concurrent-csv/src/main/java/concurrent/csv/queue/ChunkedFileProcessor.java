@@ -1,24 +1,26 @@
 package concurrent.csv.queue;
 
 import com.google.common.base.Stopwatch;
+import com.sun.nio.file.ExtendedOpenOption;
 import concurrent.csv.queue.validation.CsvSchemaLoader;
 import concurrent.csv.queue.validation.RowValidator;
 import concurrent.csv.queue.validation.RowValidator1;
+import concurrent.csv.queue.validation.UniqueKeyValidator;
+import concurrent.csv.queue.validation.ValidationResult;
 import concurrent.csv.queue.validation.schema.OpenApiSpec;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
 import java.nio.channels.FileChannel;
-import java.nio.charset.CharacterCodingException;
-import java.nio.charset.CharsetDecoder;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.LongStream;
 
 public class ChunkedFileProcessor {
 
@@ -27,99 +29,226 @@ public class ChunkedFileProcessor {
     private final int queueCapacity;
     private final BlockingQueue<Future<ChunkResult>> futureQueue;
     private final ExecutorService processorExecutor;
-    private final ExecutorService readerExecutor;
-    private final ExecutorService writerExecutor;
+    private final ExecutorService ioExecutor;
     private final AtomicBoolean shutdown = new AtomicBoolean(false);
     private final Future<ChunkResult> poisonPill = CompletableFuture.completedFuture(null);
     private final CsvLineConsumer consumer;
     private final RowValidator validator;
+    private final ProcessorOptions options;
+    private final StructuralScanner scanner = StructuralScanner.get();
+    private LineSequencer lineSequencer = new LineSequencer(1);
+    // the same prefix sum over the record counts, numbers the rows
+    private LineSequencer rowSequencer = new LineSequencer(0);
+    // reader thread only
+    private long nextSequence;
+    // chunks submitted but not yet delivered, bounds an unordered run like the queue bounds an ordered one
+    private final Semaphore undelivered;
+    // false when the executors, validator and pools are borrowed from a CsvEngine
+    private final boolean ownsResources;
+    private volatile Future<?> readerTask;
+    private volatile Future<?> writerTask;
+
+    private static final int EXPECTED_COLUMNS = 16;
+    private static final int STITCH_RESERVE = 64 * 1024;
+    // covers the 512 byte and 4 KiB logical block sizes of common devices
+    static final int DIRECT_IO_ALIGNMENT = 4096;
+    private static final Runnable NO_RELEASE = () -> {};
+
+    private final BufferPool bufferPool;
+    private final MemoryBudget memoryBudget;
+    private final int stitchReserve;
+    // columns recorded by the tokenizer, null for all
+    private final boolean[] projection;
+    // rows failing it are dropped while tokenizing, null keeps all
+    private final RowFilter.Compiled filter;
+    // aggregated by the workers per chunk, null without a group-by
+    private final GroupBy.Compiled groupBy;
+    // totals merged by the writer
+    private final GroupAggregates aggregates;
+    // columns whose combination has to be unique, null to skip the check
+    private final int[] uniqueKeyColumns;
+    // open while a run is in progress
+    private UniqueKeyValidator uniqueKeys;
+    private long duplicateKeys;
+    // outputs of the last run with a dead-letter file
+    private Quarantine quarantine;
 
     public ChunkedFileProcessor(Path filePath, int chunkSize, int queueCapacity, CsvLineConsumer consumer) {
+        this(filePath, chunkSize, queueCapacity, consumer, new ProcessorOptions());
+    }
+
+    public ChunkedFileProcessor(Path filePath, int chunkSize, int queueCapacity, CsvLineConsumer consumer, ProcessorOptions options) {
+        this(filePath, chunkSize, queueCapacity, consumer, options,
+                options.getExecutionModel().newExecutor(options.getParallelism()),
+                Executors.newVirtualThreadPerTaskExecutor(),
+                new RowValidator(CsvSchemaLoader.loadSchema("schema.yaml")),
+                new BufferPool(bufferSize(chunkSize, options), bufferCount(queueCapacity, options.getReadAhead()), alignment(options)),
+                new MemoryBudget(options.getMemoryBudgetBytes()),
+                true);
+    }
+
+    ChunkedFileProcessor(Path filePath, int chunkSize, int queueCapacity, CsvLineConsumer consumer, ProcessorOptions options,
+                         ExecutorService processorExecutor, ExecutorService ioExecutor, RowValidator validator,
+                         BufferPool bufferPool, MemoryBudget memoryBudget, boolean ownsResources) {
         this.filePath = filePath;
-        this.chunkSize = chunkSize;
+        this.options = options;
+        this.chunkSize = alignedChunkSize(chunkSize, options);
         this.queueCapacity = queueCapacity;
         this.futureQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.undelivered = new Semaphore(queueCapacity);
         this.consumer = consumer;
-        this.processorExecutor = Executors.newVirtualThreadPerTaskExecutor();
-        this.readerExecutor = Executors.newVirtualThreadPerTaskExecutor();
-        this.writerExecutor = Executors.newVirtualThreadPerTaskExecutor();
-        this.validator = new RowValidator(loadSpec());
+        this.processorExecutor = processorExecutor;
+        this.ioExecutor = ioExecutor;
+        this.validator = validator;
+        this.stitchReserve = stitchReserve(this.chunkSize);
+        this.bufferPool = bufferPool;
+        this.memoryBudget = memoryBudget;
+        this.ownsResources = ownsResources;
+        this.filter = options.getRowFilter() != null ? options.getRowFilter().compile(validator::columnIndex) : null;
+        this.groupBy = options.getGroupBy() != null ? options.getGroupBy().compile(validator::columnIndex) : null;
+        this.aggregates = groupBy != null ? groupBy.newTable() : null;
+        this.uniqueKeyColumns = options.getUniqueKey() != null
+                ? Arrays.stream(options.getUniqueKey()).mapToInt(validator::columnIndex).toArray() : null;
+        this.projection = projection(options, validator,
+                filter != null ? filter.columns() : new int[0], groupBy != null ? groupBy.columns() : new int[0],
+                uniqueKeyColumns != null ? uniqueKeyColumns : new int[0]);
     }
 
-    private OpenApiSpec loadSpec() {
-        return CsvSchemaLoader.loadSchema("schema.yaml");
+    /**
+     * Totals of the {@link ProcessorOptions#setGroupBy group-by} over all chunks delivered so far, complete once
+     * {@link #run()} returned. {@code null} without a group-by. A resumed run only covers the rows after its
+     * checkpoint.
+     */
+    public GroupAggregates aggregates() {
+        return aggregates;
     }
 
-    public void run() throws IOException, InterruptedException {
-        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
-            long fileSize = channel.size();
+    /**
+     * Valid and quarantined row counts of the last run with a {@link ProcessorOptions#setDeadLetterFile dead-letter
+     * file}, {@code null} without one.
+     */
+    public Quarantine quarantine() {
+        return quarantine;
+    }
 
-            readerExecutor.submit(() -> {
-                long position = 0;
-                ByteBuffer leftover = ByteBuffer.allocate(0);
+    /**
+     * Rows whose {@link ProcessorOptions#setUniqueKey unique key} repeated an earlier row, as of the last run.
+     */
+    public long duplicateKeys() {
+        UniqueKeyValidator keys = uniqueKeys;
+        return keys != null ? keys.duplicates() : duplicateKeys;
+    }
 
-                try {
-                    while (position < fileSize && !shutdown.get()) {
-                        int readSize = (int) Math.min(chunkSize, fileSize - position);
-                        int leftoverSize = leftover.remaining();
-                        ByteBuffer buffer = ByteBuffer.allocate(leftoverSize + readSize);
-                        buffer.put(leftover);
-
-                        int bytesRead = channel.read(buffer, position);
-                        buffer.flip();
-
-                        int lastCsvBoundary = findLastCompleteCsvRecord(buffer);
-                        if (lastCsvBoundary == -1) {
-                            leftover = buffer;
-                            position += readSize;
-                            continue;
-                        }
+    private static boolean[] projection(ProcessorOptions options, RowValidator validator, int[]... required) {
+        if (options.getProjectedColumns() == null && options.getProjectedProperties() == null) {
+            return null;
+        }
+        List<Integer> columns = new ArrayList<>();
+        if (options.getProjectedColumns() != null) {
+            for (int column : options.getProjectedColumns()) {
+                columns.add(column);
+            }
+        }
+        if (options.getProjectedProperties() != null) {
+            for (String property : options.getProjectedProperties()) {
+                columns.add(validator.columnIndex(property));
+            }
+        }
+        // filter, group-by and unique key need their columns tokenized even when the consumer does not
+        for (int[] internal : required) {
+            for (int column : internal) {
+                columns.add(column);
+            }
+        }
+        boolean[] projection = new boolean[columns.stream().mapToInt(Integer::intValue).max().orElse(-1) + 1];
+        for (int column : columns) {
+            projection[column] = true;
+        }
+        return projection;
+    }
 
-                        ByteBuffer toProcess = buffer.slice(0, lastCsvBoundary);
-                        leftover = buffer.slice(lastCsvBoundary, buffer.limit() - lastCsvBoundary);
-
-                        final ByteBuffer chunkCopy = toProcess.asReadOnlyBuffer();
-                        Chunk chunk = new Chunk(chunkCopy);
-
-                        Future<ChunkResult> future = processorExecutor.submit(() -> {
-                            try {
-                                ChunkResult parsed = parse(chunk);
-                                validate(parsed);
-                                return parsed;
-                            } catch (NonFatalProcessingException e) {
-                                return new ChunkResult(null, null, Optional.of(e));
-                            } catch (Exception fatal) {
-                                shutdownAll();
-                                throw fatal;
-                            }
-                        });
+    static int stitchReserve(int chunkSize) {
+        return Math.min(chunkSize, STITCH_RESERVE);
+    }
 
-                        futureQueue.put(future);
-                        position += readSize;
-                    }
+    static int alignment(ProcessorOptions options) {
+        return options.getReadMode() == ReadMode.DIRECT ? DIRECT_IO_ALIGNMENT : 1;
+    }
 
-                    if (leftover.hasRemaining() && !shutdown.get()) {
-                        Chunk chunk = new Chunk(leftover);
-                        Future<ChunkResult> future = processorExecutor.submit(() -> {
-                            try {
-                                ChunkResult parsed = parse(chunk);
-                                validate(parsed);
-                                return parsed;
-                            } catch (NonFatalProcessingException e) {
-                                return new ChunkResult(null, null, Optional.of(e));
-                            } catch (Exception fatal) {
-                                shutdownAll();
-                                throw fatal;
-                            }
-                        });
-                        futureQueue.put(future);
-                    }
+    /**
+     * Direct I/O reads whole blocks, the chunk size is rounded up to a multiple of the block size.
+     */
+    static int alignedChunkSize(int chunkSize, ProcessorOptions options) {
+        int alignment = alignment(options);
+        return (chunkSize + alignment - 1) / alignment * alignment;
+    }
+
+    static int bufferSize(int chunkSize, ProcessorOptions options) {
+        int aligned = alignedChunkSize(chunkSize, options);
+        return stitchReserve(aligned) + aligned;
+    }
+
+    static int bufferCount(int queueCapacity, int readAhead) {
+        // queued chunks + the one being consumed + the ones being filled + the one still holding the leftover
+        return queueCapacity + 2 + readAhead;
+    }
+
+    /**
+     * Bytes currently held by in-flight chunks and their parse results, see {@link ProcessorOptions#setMemoryBudgetBytes}.
+     */
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    boolean isShutdown() {
+        return shutdown.get();
+    }
+
+    public void run() throws IOException, InterruptedException {
+        resumeFrom(Checkpoint.START);
+    }
+
+    /**
+     * Processes the file from a {@link Checkpoint} of an earlier run on, continuing its row and line numbering. With
+     * {@link ProcessorOptions#setCheckpointFile} set, the progress acknowledged by the consumer is written
+     * periodically and once more when the run ends, so a crashed job is resumed with
+     * {@code resumeFrom(Checkpoint.read(file))} and only redoes the unacknowledged tail.
+     */
+    public void resumeFrom(Checkpoint checkpoint) throws IOException, InterruptedException {
+        lineSequencer = new LineSequencer(checkpoint.lineNumber());
+        rowSequencer = new LineSequencer(checkpoint.rowNumber());
+        nextSequence = 0;
+        long start = checkpoint.byteOffset();
+        try (FileChannel channel = open(); Quarantine output = openQuarantine(start > 0)) {
+            openUniqueKeys();
+            long fileSize = channel.size();
+            Optional<SidecarIndex> sidecar = options.isSidecarIndex() ? SidecarIndex.load(filePath, chunkSize) : Optional.empty();
+            // a resumed, filtered or quarantining run only sees part of the rows, an unordered one sees them out of order
+            SidecarIndex.Builder indexBuilder = options.isSidecarIndex() && sidecar.isEmpty() && start == 0 && filter == null
+                    && options.getDeadLetterFile() == null && !options.isUnorderedDelivery()
+                    ? SidecarIndex.builder(filePath, chunkSize) : null;
 
+            readerTask = ioExecutor.submit(() -> {
+                try {
+                    if (sidecar.isPresent()) {
+                        readSplits(channel, fileSize, SpeculativeSplitter.from(sidecar.get().splits(), start));
+                    } else if (options.isParallelSplitting()) {
+                        readSplits(channel, fileSize, SpeculativeSplitter.split(channel, start, fileSize, chunkSize, processorExecutor));
+                    } else if (options.getReadMode() == ReadMode.MEMORY_MAPPED) {
+                        readMapped(channel, start, fileSize);
+                    } else {
+                        readBuffered(channel, start, fileSize);
+                    }
                 } catch (IOException | InterruptedException e) {
                     shutdownAll();
                     e.printStackTrace();
                 } finally {
                     try {
+                        if (options.isUnorderedDelivery()) {
+                            // the writer stops at the pill, it must not overtake chunks still being processed
+                            undelivered.acquire(queueCapacity);
+                            undelivered.release(queueCapacity);
+                        }
                         futureQueue.put(poisonPill);
                     } catch (InterruptedException e) {
                         Thread.currentThread().interrupt();
@@ -127,178 +256,651 @@ public class ChunkedFileProcessor {
                 }
             });
 
-            writerExecutor.submit(() -> {
-                try {
+            AtomicBoolean indexComplete = new AtomicBoolean(indexBuilder != null);
+            AtomicReference<Checkpoint> acknowledged = new AtomicReference<>(checkpoint);
+            writerTask = ioExecutor.submit(() -> {
+                Path checkpointFile = options.getCheckpointFile();
+                long nextCheckpoint = System.currentTimeMillis() + options.getCheckpointIntervalMillis();
+                Watermark watermark = new Watermark();
+                try (PageCacheAdvisor advisor = options.isDropPageCache() ? new PageCacheAdvisor(filePath) : null) {
                     while (!shutdown.get()) {
                         Future<ChunkResult> future = futureQueue.take();
                         if (future == poisonPill) break;
 
                         ChunkResult result = future.get();
+                        if (indexComplete.get()) {
+                            if (result.rows != null) {
+                                indexBuilder.add(result);
+                            } else {
+                                indexComplete.set(false);
+                            }
+                        }
+                        long consumedLength = result.buffer != null ? result.buffer.remaining() : 0;
+                        if (output != null && result.rows != null) {
+                            output.write(result);
+                        }
                         handleResult(result);
+                        Checkpoint next = watermark.acknowledge(result);
+                        if (options.isUnorderedDelivery()) {
+                            undelivered.release();
+                        }
+                        if (result.aggregates() != null) {
+                            aggregates.merge(result.aggregates());
+                        }
+                        if (advisor != null && consumedLength > 0) {
+                            advisor.dontNeed(result.fileOffset(), consumedLength);
+                        }
+
+                        if (next != null) {
+                            acknowledged.set(next);
+                            if (checkpointFile != null && System.currentTimeMillis() >= nextCheckpoint) {
+                                writeCheckpoint(next, checkpointFile);
+                                nextCheckpoint = System.currentTimeMillis() + options.getCheckpointIntervalMillis();
+                            }
+                        }
                     }
-                } catch (InterruptedException | ExecutionException e) {
+                } catch (InterruptedException | ExecutionException | IOException | RuntimeException e) {
+                    // a failing consumer must not leave the reader blocked on a full queue
                     shutdownAll();
                     e.printStackTrace();
                 }
             });
 
-            readerExecutor.shutdown();
-            writerExecutor.shutdown();
-            readerExecutor.awaitTermination(1, TimeUnit.MINUTES);
-            writerExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            await(readerTask);
+            await(writerTask);
+            if (options.getCheckpointFile() != null) {
+                writeCheckpoint(acknowledged.get(), options.getCheckpointFile());
+            }
+            if (indexComplete.get() && !shutdown.get()) {
+                writeIndex(indexBuilder.build());
+            }
+        } finally {
+            if (ownsResources) {
+                // close() waits for running tasks however long they take
+                ioExecutor.close();
+                processorExecutor.close();
+            }
+            closeUniqueKeys();
+        }
+    }
+
+    /**
+     * Opens the file for {@link ReadMode#DIRECT} with {@code O_DIRECT}, falling back to regular reads where the file
+     * system does not support it or uses larger blocks than {@link #DIRECT_IO_ALIGNMENT}.
+     */
+    private FileChannel open() throws IOException {
+        if (options.getReadMode() == ReadMode.DIRECT) {
+            try {
+                if (DIRECT_IO_ALIGNMENT % Files.getFileStore(filePath).getBlockSize() == 0) {
+                    return FileChannel.open(filePath, StandardOpenOption.READ, ExtendedOpenOption.DIRECT);
+                }
+            } catch (IOException | UnsupportedOperationException e) {
+                // the aligned blocks read just as well through the page cache
+            }
+        }
+        return FileChannel.open(filePath, StandardOpenOption.READ);
+    }
+
+    private static void writeCheckpoint(Checkpoint checkpoint, Path file) {
+        try {
+            checkpoint.write(file);
+        } catch (IOException e) {
+            // the previous checkpoint stays valid, a resumed run just redoes a little more
+            e.printStackTrace();
+        }
+    }
+
+    private static void writeIndex(SidecarIndex index) {
+        try {
+            index.write();
+        } catch (IOException e) {
+            // the index only speeds up later runs, this run is complete without it
+            e.printStackTrace();
+        }
+    }
+
+    private static void await(Future<?> task) throws InterruptedException {
+        try {
+            task.get();
+        } catch (CancellationException e) {
+            // cancelled by shutdownAll, the cause has already been reported
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        }
+    }
+
+    /**
+     * Processes a file that fits into a single chunk on the calling thread, without the reader, the queue and the
+     * writer hand-offs.
+     */
+    void runInline() throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ);
+             Quarantine output = openQuarantine(false)) {
+            openUniqueKeys();
+            int fileSize = (int) channel.size();
+            BufferPool.Lease lease = bufferPool.acquire();
+            ByteBuffer buffer = lease.buffer().limit(fileSize);
+            try {
+                readFully(channel, buffer, 0);
+            } catch (IOException | RuntimeException e) {
+                lease.release();
+                throw e;
+            }
+            Chunk chunk = new Chunk(buffer.flip().asReadOnlyBuffer(), 0, lease::release, 0, lineSequencer.next(), rowSequencer.next());
+            ChunkResult result;
+            try {
+                result = finish(parse(chunk));
+            } catch (NonFatalProcessingException e) {
+                result = new ChunkResult(null, null, Optional.of(e), chunk.release(), 0, 0, -1, -1, null, List.of());
+            } catch (RuntimeException fatal) {
+                chunk.release().run();
+                throw fatal;
+            }
+            if (output != null && result.rows() != null) {
+                try {
+                    output.write(result);
+                } catch (IOException | RuntimeException e) {
+                    result.release();
+                    throw e;
+                }
+            }
+            handleResult(result);
+            if (result.aggregates() != null) {
+                aggregates.merge(result.aggregates());
+            }
         } finally {
-            processorExecutor.shutdown();
-            processorExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            closeUniqueKeys();
+        }
+    }
+
+    /**
+     * Starts an empty key table for the run, its keys are only meaningful for one pass over the file. A resumed run
+     * does not see the keys before its checkpoint.
+     */
+    private void openUniqueKeys() throws IOException {
+        uniqueKeys = uniqueKeyColumns != null ? new UniqueKeyValidator(filePath, uniqueKeyColumns) : null;
+    }
+
+    private Quarantine openQuarantine(boolean append) throws IOException {
+        Path deadLetterFile = options.getDeadLetterFile();
+        quarantine = deadLetterFile != null ? new Quarantine(filePath, options.getValidOutputFile(), deadLetterFile, append) : null;
+        return quarantine;
+    }
+
+    // keeps the count, the off-heap table can go
+    private void closeUniqueKeys() throws IOException {
+        UniqueKeyValidator keys = uniqueKeys;
+        if (keys != null) {
+            duplicateKeys = keys.duplicates();
+            uniqueKeys = null;
+            keys.close();
+        }
+    }
+
+    /**
+     * Reads fixed {@code chunkSize} blocks into pooled buffers. Every pooled buffer reserves {@link #STITCH_RESERVE}
+     * bytes in front of the block, the incomplete record left over from the previous block is copied right in front
+     * of the new data so the chunk stays contiguous. Leftovers larger than the reserve fall back to a one-off buffer.
+     * The blocks sit at fixed offsets, so up to {@link ProcessorOptions#getReadAhead()} of them are read ahead
+     * while the boundary of the current one is searched.
+     */
+    private void readBuffered(FileChannel channel, long start, long fileSize) throws IOException, InterruptedException {
+        ByteBuffer leftover = ByteBuffer.allocate(0);
+        long leftoverOffset = start;
+        BufferPool.Lease leftoverLease = null;
+        int alignment = alignment(options);
+        // a block ends chunkSize bytes after its start rounded down to the alignment, only under direct I/O a
+        // resumed run's unaligned start makes the first block shorter
+        Iterator<SpeculativeSplitter.Split> blocks = LongStream.iterate(start, position -> position < fileSize, position -> blockEnd(position, alignment))
+                .mapToObj(position -> new SpeculativeSplitter.Split(position, Math.min(blockEnd(position, alignment), fileSize)))
+                .iterator();
+
+        try (ReadAhead reader = new ReadAhead(channel, blocks, bufferPool, stitchReserve, options.getReadAhead(), alignment, ioExecutor)) {
+            while (reader.hasNext() && !shutdown.get()) {
+                ReadAhead.Block block = reader.next();
+                int readSize = block.length();
+                int leftoverSize = leftover.remaining();
+                ByteBuffer buffer;
+                BufferPool.Lease lease = block.lease();
+
+                if (lease != null && leftoverSize <= block.offset()) {
+                    ByteBuffer pooled = block.buffer();
+                    pooled.limit(block.offset() + readSize).position(block.offset() - leftoverSize);
+                    pooled.put(leftover);
+                    buffer = pooled.slice(block.offset() - leftoverSize, leftoverSize + readSize);
+                } else {
+                    buffer = ByteBuffer.allocate(leftoverSize + readSize);
+                    buffer.put(leftover);
+                    buffer.put(block.buffer().slice(block.offset(), readSize));
+                    buffer.flip();
+                    block.release();
+                    lease = null;
+                }
+                if (leftoverLease != null) {
+                    leftoverLease.release();
+                }
+
+                int lastCsvBoundary = scanner.lastRecordEnd(buffer, 0, buffer.limit());
+                if (lastCsvBoundary == -1) {
+                    leftover = buffer;
+                    leftoverLease = lease;
+                    continue;
+                }
+
+                ByteBuffer toProcess = buffer.slice(0, lastCsvBoundary);
+                leftover = buffer.slice(lastCsvBoundary, buffer.limit() - lastCsvBoundary);
+                // the chunk and the leftover both live in the buffer, it returns to the pool once both are done
+                leftoverLease = lease == null ? null : lease.retain();
+
+                submit(new Chunk(toProcess.asReadOnlyBuffer(), leftoverOffset, lease == null ? NO_RELEASE : lease::release));
+                leftoverOffset += lastCsvBoundary;
+            }
+        }
+
+        if (leftover.hasRemaining() && !shutdown.get()) {
+            submit(new Chunk(leftover.asReadOnlyBuffer(), leftoverOffset, leftoverLease == null ? NO_RELEASE : leftoverLease::release));
+        } else if (leftoverLease != null) {
+            leftoverLease.release();
+        }
+    }
+
+    private long blockEnd(long position, int alignment) {
+        return position - position % alignment + chunkSize;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read == -1) break;
+            offset += read;
+        }
+    }
+
+    /**
+     * Maps the file in windows of {@link ProcessorOptions#getMappedWindowSize()} bytes and hands out read-only
+     * slices of the window as chunks. A record crossing the end of a chunk is not copied; the next chunk simply
+     * starts at the last record boundary. A window is only remapped once a chunk would cross its end.
+     */
+    private void readMapped(FileChannel channel, long start, long fileSize) throws IOException, InterruptedException {
+        long windowStart = start;
+        ByteBuffer window = null;
+        long chunkStart = start;
+        int span = chunkSize;
+
+        while (chunkStart < fileSize && !shutdown.get()) {
+            long chunkEnd = Math.min(chunkStart + span, fileSize);
+            if (window == null || chunkEnd > windowStart + window.capacity()) {
+                windowStart = chunkStart;
+                long windowSize = Math.min(Math.max(options.getMappedWindowSize(), span), fileSize - windowStart);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+            }
+
+            ByteBuffer candidate = window.slice((int) (chunkStart - windowStart), (int) (chunkEnd - chunkStart));
+            int lastCsvBoundary = chunkEnd == fileSize ? candidate.limit() : scanner.lastRecordEnd(candidate, 0, candidate.limit());
+            if (lastCsvBoundary == -1) {
+                // a single record is larger than the chunk, widen the span until it fits
+                span = (int) Math.min((long) span * 2, Integer.MAX_VALUE - 8);
+                continue;
+            }
+
+            submit(new Chunk(candidate.slice(0, lastCsvBoundary).asReadOnlyBuffer(), chunkStart, NO_RELEASE));
+            chunkStart += lastCsvBoundary;
+            span = chunkSize;
+        }
+    }
+
+    /**
+     * Reads chunks at split points that are already known to be record aligned, so no boundary scan and no leftover
+     * handling is needed on the reader thread.
+     */
+    private void readSplits(FileChannel channel, long fileSize, List<SpeculativeSplitter.Split> splits) throws IOException, InterruptedException {
+        if (options.getReadMode() == ReadMode.MEMORY_MAPPED) {
+            long windowStart = 0;
+            ByteBuffer window = null;
+            for (SpeculativeSplitter.Split split : splits) {
+                if (shutdown.get()) break;
+
+                if (window == null || split.end() > windowStart + window.capacity()) {
+                    windowStart = split.start();
+                    long windowSize = Math.min(Math.max(options.getMappedWindowSize(), split.length()), fileSize - windowStart);
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+                }
+                submit(new Chunk(window.slice((int) (split.start() - windowStart), split.length()).asReadOnlyBuffer(), split.start(), NO_RELEASE));
+            }
+            return;
+        }
+
+        try (ReadAhead reader = new ReadAhead(channel, splits.iterator(), bufferPool, 0, options.getReadAhead(), alignment(options), ioExecutor)) {
+            while (reader.hasNext() && !shutdown.get()) {
+                ReadAhead.Block block = reader.next();
+                ByteBuffer chunk = block.buffer().slice(block.offset(), block.length()).asReadOnlyBuffer();
+                submit(new Chunk(chunk, block.position(), block.lease() == null ? NO_RELEASE : block::release));
+            }
+        }
+    }
+
+    private void submit(Chunk read) throws InterruptedException {
+        long rawBytes = read.buffer().remaining();
+        memoryBudget.acquire(rawBytes); // blocks while the byte budget is exhausted
+        Chunk chunk = new Chunk(read.buffer(), read.fileOffset(), () -> {
+            read.release().run();
+            memoryBudget.release(rawBytes);
+        }, nextSequence++, lineSequencer.next(), rowSequencer.next());
+
+        if (options.isUnorderedDelivery()) {
+            undelivered.acquire();
+            processorExecutor.submit(() -> {
+                try {
+                    // completed chunks queue up in completion order, the writer never waits for a slow one
+                    futureQueue.put(CompletableFuture.completedFuture(process(chunk)));
+                } catch (Exception fatal) {
+                    // nobody waits for this task, process() has shut everything down
+                    fatal.printStackTrace();
+                }
+            });
+        } else {
+            futureQueue.put(processorExecutor.submit(() -> process(chunk)));
+        }
+    }
+
+    private ChunkResult process(Chunk chunk) throws Exception {
+        try {
+            return finish(parse(chunk));
+        } catch (NonFatalProcessingException e) {
+            return new ChunkResult(null, null, Optional.of(e), chunk.release(), chunk.sequence(), chunk.fileOffset(), -1, -1,
+                    null, List.of());
+        } catch (Exception fatal) {
+            chunk.release().run();
+            shutdownAll();
+            throw fatal;
         }
     }
 
     private void shutdownAll() {
         System.out.println("Shutting down all executors...");
         if (shutdown.compareAndSet(false, true)) {
-            processorExecutor.shutdownNow();
-            readerExecutor.shutdownNow();
-            writerExecutor.shutdownNow();
+            lineSequencer.abort(new CancellationException("processing was shut down"));
+            rowSequencer.abort(new CancellationException("processing was shut down"));
+            if (ownsResources) {
+                processorExecutor.shutdownNow();
+            }
+            for (Future<ChunkResult> pending : futureQueue) {
+                pending.cancel(true);
+            }
+            cancel(readerTask);
+            cancel(writerTask);
             futureQueue.clear();
             futureQueue.offer(poisonPill);
         }
     }
 
-    public static int findLastCompleteCsvRecord(ByteBuffer buffer) {
-        boolean inQuotes = false;
-        for (int i = buffer.limit() - 1; i >= buffer.position(); i--) {
-            byte b = buffer.get(i);
-            if (b == '"') inQuotes = !inQuotes;
-            if (b == '\n' && !inQuotes) return i + 1;
+    private static void cancel(Future<?> task) {
+        if (task != null) {
+            task.cancel(true);
         }
-        return -1;
     }
 
-    private ChunkResult parse(Chunk chunk) throws NonFatalProcessingException {
+    /**
+     * Tokenizes the chunk directly on its UTF-8 bytes. All structural characters are ASCII and can never occur
+     * inside a multibyte sequence, so field offsets are byte offsets into the chunk buffer and nothing is decoded
+     * here; consumers decode single fields on demand through {@link ChunkResult#text(int, int)}.
+     * <p>
+     * The unquoted delimiters and line breaks are located up front by the {@link StructuralScanner}, the loop below
+     * only visits those positions.
+     * <p>
+     * Once the rows are known their line count is handed to the {@link LineSequencer}, the chunk then waits until its
+     * predecessors have published theirs and knows the line number of its first row.
+     */
+    private ChunkResult parse(Chunk chunk) throws NonFatalProcessingException, InterruptedException {
         ByteBuffer buffer = chunk.buffer();
-        buffer.mark();
-
-        CharBuffer charBuffer;
+        int from = buffer.position();
+        int limit = buffer.limit();
+        // pooled, the index is only needed until the rows are tokenized
+        StructuralIndex index = scanner.index(buffer, from, limit, bufferPool.acquireIndex());
+        int quotedLineBreaks = index.quotedLineBreaks();
+        ColumnarRows rows;
         try {
-            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
-            charBuffer = decoder.decode(buffer);
-        } catch (CharacterCodingException e) {
-            throw new NonFatalProcessingException("Decoding failed", e);
-        }
-        buffer.reset();
-
-        List<Row> rows = new ArrayList<>();
-        Field[] fields = new Field[18];
-        int fieldCount = 0;
-        int lineStart = 0;
-        int fieldStart = 0;
-        boolean inQuotes = false;
-
-        for (int i = 0; i < charBuffer.length(); i++) {
-            char c = charBuffer.get(i);
-            if (inQuotes) {
-                if (c == '"') {
-                    if (i + 1 < charBuffer.length() && charBuffer.get(i + 1) == '"') {
-                        i++;
-                    } else {
-                        inQuotes = false;
-                    }
-                }
-            } else {
-                if (c == '"') {
-                    inQuotes = true;
-                } else if (c == ',') {
-                    fields[fieldCount++] = new Field(fieldStart, i);
+            rows = new ColumnarRows(index.size() / EXPECTED_COLUMNS + 1, EXPECTED_COLUMNS, projection);
+            int lineStart = from;
+            int fieldStart = from;
+            int lastReturn = -2;
+
+            for (int k = 0; k < index.size(); k++) {
+                int i = index.get(k);
+                byte b = buffer.get(i);
+                if (b == ',') {
+                    rows.addField(fieldStart, i);
                     fieldStart = i + 1;
-                } else if (c == '\n' || c == '\r') {
-                    if (c == '\r' && i + 1 < charBuffer.length() && charBuffer.get(i + 1) == '\n') {
-                        i++;
+                } else {
+                    if (b == '\n' && i == lastReturn + 1) {
+                        // second half of a CRLF, the row already ended at the CR
+                        fieldStart = i + 1;
+                        lineStart = i + 1;
+                        continue;
+                    }
+                    if (b == '\r') {
+                        lastReturn = i;
+                    }
+                    rows.addField(fieldStart, i);
+                    rows.endRow(lineStart, i);
+                    if (filter != null && !filter.test(rows, rows.rowCount() - 1, buffer)) {
+                        rows.dropLastRow();
                     }
-                    fields[fieldCount++] = new Field(fieldStart, i);
-                    rows.add(new Row(lineStart, i, fields, fieldCount));
                     fieldStart = i + 1;
                     lineStart = i + 1;
-                    fieldCount = 0;
                 }
             }
+
+            if (fieldStart < limit || lineStart < fieldStart) {
+                rows.addField(fieldStart, limit);
+                rows.endRow(lineStart, limit);
+                if (filter != null && !filter.test(rows, rows.rowCount() - 1, buffer)) {
+                    rows.dropLastRow();
+                }
+            }
+
+            if (quotedLineBreaks > 0) {
+                rows.countLineBreaks(buffer, from, quotedLineBreaks);
+            }
+        } finally {
+            bufferPool.releaseIndex(index);
         }
+        chunk.lines().publish(rows.recordCount() + quotedLineBreaks);
+        chunk.rows().publish(rows.recordCount());
+        long firstLineNumber = chunk.lines().firstLineNumber();
+        long firstRowNumber = chunk.rows().firstLineNumber();
+
+        long resultBytes = rows.sizeInBytes();
+        memoryBudget.reserve(resultBytes);
+        return new ChunkResult(rows, buffer, Optional.empty(), () -> {
+            chunk.release().run();
+            memoryBudget.release(resultBytes);
+        }, chunk.sequence(), chunk.fileOffset(), firstRowNumber, firstLineNumber, null, List.of());
+    }
 
-        if (fieldStart < charBuffer.length()) {
-            fields[fieldCount++] = new Field(fieldStart, charBuffer.length());
+    /**
+     * Validates the parsed chunk, checks its unique keys and, with a group-by, aggregates its rows while still on the
+     * worker. With a dead-letter file invalid rows are quarantined instead of only being reported.
+     */
+    private ChunkResult finish(ChunkResult parsed) throws NonFatalProcessingException {
+        // read once, closeUniqueKeys() clears the field when a run is aborted
+        UniqueKeyValidator keys = uniqueKeys;
+        List<Quarantine.Entry> quarantined = List.of();
+        if (options.getDeadLetterFile() != null) {
+            quarantined = quarantine(parsed, keys);
+        } else {
+            validator.validate(parsed);
+            if (keys != null) {
+                keys.validate(parsed);
+            }
         }
-        if (fieldCount > 0) {
-            rows.add(new Row(lineStart, charBuffer.length(), fields, fieldCount));
+        if (groupBy == null && quarantined.isEmpty()) {
+            return parsed;
         }
-
-        return new ChunkResult(rows, charBuffer, Optional.empty());
+        return new ChunkResult(parsed.rows(), parsed.buffer(), parsed.error(), parsed.onRelease(), parsed.sequence(),
+                parsed.fileOffset(), parsed.firstRowNumber(), parsed.firstLineNumber(),
+                groupBy != null ? groupBy.aggregate(parsed) : null, quarantined);
     }
 
-    private void validate(ChunkResult result) throws NonFatalProcessingException {
-
-        for (Row row : result.rows) {
-            validator.validate(row, result.charBuffer);
-
+    /**
+     * Validates row by row and drops the invalid rows from the chunk. Row 0, the header, is never quarantined.
+     */
+    private List<Quarantine.Entry> quarantine(ChunkResult parsed, UniqueKeyValidator keys) {
+        ColumnarRows rows = parsed.rows();
+        BitSet invalid = new BitSet();
+        List<Quarantine.Entry> quarantined = new ArrayList<>();
+        for (int row = 0; row < rows.rowCount(); row++) {
+            if (parsed.rowNumber(row) == 0) {
+                continue;
+            }
+            ValidationResult result = validator.validate(parsed, row);
+            if (keys != null) {
+                result = result.and(keys.validate(parsed, row));
+            }
+            if (!result.isValid()) {
+                invalid.set(row);
+                quarantined.add(new Quarantine.Entry(parsed.lineNumber(row), parsed.rowOffset(row),
+                        Quarantine.recordLength(parsed, row), result.getCodes()));
+            }
         }
-
+        rows.dropRows(invalid);
+        return quarantined;
     }
 
     private void handleResult(ChunkResult result) {
-        consumer.accept(result);
+        try {
+            consumer.accept(result);
+        } finally {
+            result.release();
+        }
     }
 
-    private record Chunk(ByteBuffer buffer) {}
-    public record ChunkResult(List<Row> rows, CharBuffer charBuffer, Optional<Exception> error) {}
+    public enum ReadMode {
+        BUFFERED,
+        MEMORY_MAPPED,
+        /**
+         * Buffered reads that bypass the page cache, for one-shot ingests of files much larger than memory.
+         */
+        DIRECT
+    }
 
-    public static class NonFatalProcessingException extends Exception {
-        public NonFatalProcessingException(String message) {
-            super(message);
-        }
-        public NonFatalProcessingException(String message, Throwable cause) {
-            super(message, cause);
+    private record Chunk(ByteBuffer buffer, long fileOffset, Runnable release, long sequence, LineSequencer.Slot lines,
+                         LineSequencer.Slot rows) {
+        Chunk(ByteBuffer buffer, long fileOffset, Runnable release) {
+            this(buffer, fileOffset, release, -1, null, null);
         }
     }
 
-    public interface CsvLineConsumer {
-        void accept(ChunkResult result);
+    /**
+     * Progress acknowledged by the consumer. Chunks may be acknowledged in any order, the checkpoint only moves over
+     * the gap-free prefix of sequence numbers. It stops for good at the first failed chunk, a resumed run has to
+     * redo it.
+     */
+    private static final class Watermark {
+
+        private final Map<Long, Checkpoint> ahead = new HashMap<>();
+        private long next;
+        private long failed = Long.MAX_VALUE;
+
+        /**
+         * Returns the new checkpoint, {@code null} while the acknowledged prefix did not grow.
+         */
+        Checkpoint acknowledge(ChunkResult result) {
+            if (result.rows() == null) {
+                failed = Math.min(failed, result.sequence());
+                ahead.keySet().removeIf(sequence -> sequence > failed);
+                return null;
+            }
+            if (result.sequence() > failed) {
+                return null;
+            }
+            ahead.put(result.sequence(), Checkpoint.after(result));
+            Checkpoint checkpoint = null;
+            for (Checkpoint done; (done = ahead.remove(next)) != null; next++) {
+                checkpoint = done;
+            }
+            return checkpoint;
+        }
     }
 
-    public static class Field {
-        final int start;
-        final int end;
-        public Field(int start, int end) {
-            this.start = start;
-            this.end = end;
+    /**
+     * Result of one chunk. The buffer may be a pooled buffer that is recycled once the consumer returns, consumers
+     * must copy whatever they want to keep beyond {@link CsvLineConsumer#accept}.
+     * <p>
+     * {@code sequence} numbers the chunks of a run in file order from 0, it tells consumers of an
+     * {@linkplain ProcessorOptions#setUnorderedDelivery unordered} run where a chunk belongs. {@code fileOffset} is
+     * the position of the first chunk byte in the file. {@code firstRowNumber} is the row number of the first row,
+     * the header being row 0, and {@code firstLineNumber} its 1-based file line; both are {@code -1} for chunks that
+     * failed. {@code aggregates} holds the {@link GroupBy} aggregates of the chunk's rows, {@code null} without a
+     * group-by. {@code quarantined} lists the rows that failed validation and were dropped from {@code rows}, only
+     * filled when a {@linkplain ProcessorOptions#setDeadLetterFile dead-letter file} is set.
+     */
+    public record ChunkResult(ColumnarRows rows, ByteBuffer buffer, Optional<Exception> error, Runnable onRelease,
+                              long sequence, long fileOffset, long firstRowNumber, long firstLineNumber,
+                              GroupAggregates aggregates, List<Quarantine.Entry> quarantined) {
+
+        public void release() {
+            onRelease.run();
         }
 
-        public int getStart() {
-            return start;
+        /**
+         * Number of the row in the file, rows dropped by a filter included.
+         */
+        public long rowNumber(int row) {
+            return firstRowNumber + rows.recordOrdinal(row);
         }
 
-        public int getEnd() {
-            return end;
+        /**
+         * File line the row starts on, line breaks inside quoted fields of earlier rows included.
+         */
+        public long lineNumber(int row) {
+            return firstLineNumber + rows.recordOrdinal(row) + rows.lineBreaksBefore(row);
+        }
+
+        /**
+         * Position of the first byte of the row in the file.
+         */
+        public long rowOffset(int row) {
+            return fileOffset + rows.rowStart(row) - buffer.position();
         }
-    }
 
-    public static class Row {
-        int lineStart;
-        int lineEnd;
-        Field[] fields;
-        int fieldCount;
-        Row(int lineStart, int lineEnd, Field[] fields, int fieldCount) {
-            this.lineStart = lineStart;
-            this.lineEnd = lineEnd;
-            this.fields = new Field[fieldCount];
-            System.arraycopy(fields, 0, this.fields, 0, fieldCount);
-            this.fieldCount = fieldCount;
+        public RowCursor cursor() {
+            return new RowCursor().reset(this);
         }
 
-        public Field[] getFields() {
-            return fields;
+        /**
+         * Lazily decoded view of a field, no characters are produced unless the caller reads them.
+         */
+        public CharSequence text(int row, int column) {
+            return new ByteSlice(buffer, rows.fieldStart(row, column), rows.fieldEnd(row, column));
         }
 
-        public int getFieldCount() {
-            return fieldCount;
+        public String decode(int row, int column) {
+            return ByteSlice.decode(buffer, rows.fieldStart(row, column), rows.fieldEnd(row, column));
         }
-     }
+
+        /**
+         * Read-only view of the raw UTF-8 bytes of a field.
+         */
+        public ByteBuffer bytes(int row, int column) {
+            int start = rows.fieldStart(row, column);
+            return buffer.slice(start, rows.fieldEnd(row, column) - start).asReadOnlyBuffer();
+        }
+    }
+
+    public static class NonFatalProcessingException extends Exception {
+        public NonFatalProcessingException(String message) {
+            super(message);
+        }
+        public NonFatalProcessingException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    public interface CsvLineConsumer {
+        void accept(ChunkResult result);
+    }
 
     public static void main(String[] args) throws Exception {
         Path file = Path.of(ClassLoader.getSystemResource("inserts-1_000.csv").toURI());
@@ -308,7 +910,9 @@ public class ChunkedFileProcessor {
         ChunkedFileProcessor processor = new ChunkedFileProcessor(file, 64 * 1024, 16,(result -> {
             // Process the result
             //System.out.println("Processed chunk with " + result.buffer.size() + " records.");
-            recordsProcessed.addAndGet(result.rows.size());
+            if (result.rows != null) {
+                recordsProcessed.addAndGet(result.rows.rowCount());
+            }
             result.error.ifPresent(err -> {
                 System.err.println("Error processing chunk: " + err.getMessage());
             });
@@ -0,0 +1,257 @@
+package concurrent.csv.queue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Parsed rows of one chunk as a structure of arrays.
+ * <p>
+ * Instead of one object per row and per field, a chunk keeps packed {@code int} offsets: the byte range of every
+ * row plus, per column, the start and end offset of that column in every row. All offsets point into the chunk
+ * buffer. Iterating rows and fields therefore never allocates, and a chunk of any size costs a handful of arrays.
+ * Rows shorter than the widest row report {@code -1} for their missing columns.
+ * <p>
+ * With a projection only the offsets of the projected columns are recorded, the other columns keep their index but
+ * report {@code -1} like missing ones.
+ * <p>
+ * Rows rejected by a {@link RowFilter} are dropped right after they ended, quarantined rows once the chunk was
+ * validated. The remaining rows keep their {@linkplain #recordOrdinal record ordinal}, the position of the record
+ * within the chunk, so line numbers stay exact.
+ */
+public final class ColumnarRows {
+
+    private int rowCount;
+    private int columnCount;
+    private int storedColumns;
+    private int capacity;
+    private int[] rowStarts;
+    private int[] rowEnds;
+    private int[] fieldCounts;
+    private int[][] fieldStarts;
+    private int[][] fieldEnds;
+    // quoted line breaks before each row, null while the chunk has none
+    private int[] lineBreaksBefore;
+    private int quotedLineBreaks;
+    // rows ended so far, dropped ones included
+    private int recordCount;
+    // record ordinal of each kept row, null until the first row was dropped
+    private int[] ordinals;
+
+    // column of the next field of the row currently being appended
+    private int currentField;
+    // columns whose offsets are recorded, null records all of them
+    private final boolean[] projection;
+
+    public ColumnarRows(int expectedRows, int expectedColumns) {
+        this(expectedRows, expectedColumns, null);
+    }
+
+    public ColumnarRows(int expectedRows, int expectedColumns, boolean[] projection) {
+        this.projection = projection;
+        this.capacity = Math.max(16, expectedRows);
+        this.rowStarts = new int[capacity];
+        this.rowEnds = new int[capacity];
+        this.fieldCounts = new int[capacity];
+        this.fieldStarts = new int[Math.max(1, expectedColumns)][];
+        this.fieldEnds = new int[Math.max(1, expectedColumns)][];
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public int columnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Records of the chunk, rows dropped by a filter included.
+     */
+    public int recordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Position of the row among all records of the chunk, equal to {@code row} unless rows were dropped.
+     */
+    public int recordOrdinal(int row) {
+        return ordinals == null ? row : ordinals[row];
+    }
+
+    public int rowStart(int row) {
+        return rowStarts[row];
+    }
+
+    public int rowEnd(int row) {
+        return rowEnds[row];
+    }
+
+    public int fieldCount(int row) {
+        return fieldCounts[row];
+    }
+
+    public int fieldStart(int row, int column) {
+        int[] starts = column < fieldCounts[row] ? fieldStarts[column] : null;
+        return starts != null ? starts[row] : -1;
+    }
+
+    public int fieldEnd(int row, int column) {
+        int[] ends = column < fieldCounts[row] ? fieldEnds[column] : null;
+        return ends != null ? ends[row] : -1;
+    }
+
+    public boolean isProjected(int column) {
+        return projection == null || column < projection.length && projection[column];
+    }
+
+    /**
+     * Line breaks inside quoted fields of the preceding records of the chunk, the row starts on line
+     * {@code recordOrdinal(row) + lineBreaksBefore(row)} counted from the first line of the chunk.
+     */
+    public int lineBreaksBefore(int row) {
+        return lineBreaksBefore == null ? 0 : lineBreaksBefore[row];
+    }
+
+    /**
+     * Line breaks inside quoted fields of all records of the chunk.
+     */
+    public int quotedLineBreaks() {
+        return quotedLineBreaks;
+    }
+
+    /**
+     * Approximate heap footprint of the offset arrays in bytes.
+     */
+    public long sizeInBytes() {
+        return (long) capacity * Integer.BYTES * (3 + (ordinals != null ? 1 : 0) + 2L * storedColumns);
+    }
+
+    /**
+     * Records the quoted line breaks per row, only needed for chunks whose records span several lines. Line breaks are
+     * counted the way the tokenizer ends rows, {@code \n}, a lone {@code \r} and {@code \r\n} are one each. Every
+     * record before a row ended with one line break, the line breaks in front of the row beyond its ordinal were quoted.
+     */
+    void countLineBreaks(ByteBuffer buffer, int from, int quotedTotal) {
+        lineBreaksBefore = new int[rowCount];
+        int lineBreaks = 0;
+        byte previous = 0;
+        int position = from;
+        for (int row = 0; row < rowCount; row++) {
+            for (; position < rowStarts[row]; position++) {
+                byte b = buffer.get(position);
+                if (b == '\r' || b == '\n' && previous != '\r') {
+                    lineBreaks++;
+                }
+                previous = b;
+            }
+            lineBreaksBefore[row] = lineBreaks - recordOrdinal(row);
+        }
+        quotedLineBreaks = quotedTotal;
+    }
+
+    void addField(int start, int end) {
+        int column = currentField++;
+        if (column >= columnCount) {
+            addColumn(column);
+        }
+        int[] starts = fieldStarts[column];
+        if (starts != null) {
+            starts[rowCount] = start;
+            fieldEnds[column][rowCount] = end;
+        }
+    }
+
+    void endRow(int lineStart, int lineEnd) {
+        rowStarts[rowCount] = lineStart;
+        rowEnds[rowCount] = lineEnd;
+        fieldCounts[rowCount] = currentField;
+        currentField = 0;
+        if (ordinals != null) {
+            ordinals[rowCount] = recordCount;
+        }
+        recordCount++;
+        if (++rowCount == capacity) {
+            grow();
+        }
+    }
+
+    /**
+     * Removes the row that ended last, it still counts as a record.
+     */
+    void dropLastRow() {
+        if (ordinals == null) {
+            ordinals = new int[capacity];
+            for (int row = 0; row < rowCount; row++) {
+                ordinals[row] = row;
+            }
+        }
+        rowCount--;
+    }
+
+    /**
+     * Removes the given rows after the chunk was parsed, they still count as records. Line numbers of the remaining
+     * rows do not change.
+     */
+    void dropRows(BitSet dropped) {
+        if (dropped.isEmpty()) {
+            return;
+        }
+        if (ordinals == null) {
+            ordinals = new int[capacity];
+            for (int row = 0; row < rowCount; row++) {
+                ordinals[row] = row;
+            }
+        }
+        int kept = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (dropped.get(row)) {
+                continue;
+            }
+            rowStarts[kept] = rowStarts[row];
+            rowEnds[kept] = rowEnds[row];
+            fieldCounts[kept] = fieldCounts[row];
+            ordinals[kept] = ordinals[row];
+            if (lineBreaksBefore != null) {
+                lineBreaksBefore[kept] = lineBreaksBefore[row];
+            }
+            for (int column = 0; column < columnCount; column++) {
+                if (fieldStarts[column] != null) {
+                    fieldStarts[column][kept] = fieldStarts[column][row];
+                    fieldEnds[column][kept] = fieldEnds[column][row];
+                }
+            }
+            kept++;
+        }
+        rowCount = kept;
+    }
+
+    private void addColumn(int column) {
+        if (column >= fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, column + 1);
+            fieldEnds = Arrays.copyOf(fieldEnds, column + 1);
+        }
+        if (isProjected(column)) {
+            fieldStarts[column] = new int[capacity];
+            fieldEnds[column] = new int[capacity];
+            storedColumns++;
+        }
+        columnCount = column + 1;
+    }
+
+    private void grow() {
+        capacity += capacity >> 1;
+        rowStarts = Arrays.copyOf(rowStarts, capacity);
+        rowEnds = Arrays.copyOf(rowEnds, capacity);
+        fieldCounts = Arrays.copyOf(fieldCounts, capacity);
+        if (ordinals != null) {
+            ordinals = Arrays.copyOf(ordinals, capacity);
+        }
+        for (int column = 0; column < columnCount; column++) {
+            if (fieldStarts[column] != null) {
+                fieldStarts[column] = Arrays.copyOf(fieldStarts[column], capacity);
+                fieldEnds[column] = Arrays.copyOf(fieldEnds[column], capacity);
+            }
+        }
+    }
+}
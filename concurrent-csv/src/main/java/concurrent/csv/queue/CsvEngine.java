@@ -0,0 +1,144 @@
+package concurrent.csv.queue;
+
+import concurrent.csv.queue.validation.CsvSchemaLoader;
+import concurrent.csv.queue.validation.RowValidator;
+import concurrent.csv.queue.validation.schema.OpenApiSpec;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-lived processing engine for many files.
+ * <p>
+ * A {@link ChunkedFileProcessor} built through its public constructors creates its executors, loads the schema and
+ * allocates its buffers for a single run. The engine does all of that once: the worker pool, the virtual thread
+ * executor for the reader and writer stages, the compiled validator, the memory budget and warm buffer pools are
+ * shared by every job {@link #submit submitted} to it, and jobs may run concurrently. Files that fit into a single
+ * chunk are processed synchronously on the submitting thread.
+ * <p>
+ * Checkpoint, valid output and dead-letter files belong to one file, they are passed per job as {@link JobFiles}
+ * instead of being set on the shared options.
+ */
+public class CsvEngine implements AutoCloseable {
+
+    private final int chunkSize;
+    private final int queueCapacity;
+    private final ProcessorOptions options;
+    private final ExecutorService processorExecutor;
+    private final ExecutorService ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final RowValidator validator;
+    private final MemoryBudget memoryBudget;
+    // each running job borrows a pool of its own, so jobs can never starve each other of buffers
+    private final ConcurrentLinkedQueue<BufferPool> idlePools = new ConcurrentLinkedQueue<>();
+
+    public CsvEngine(int chunkSize, int queueCapacity, ProcessorOptions options) {
+        this(chunkSize, queueCapacity, options, CsvSchemaLoader.loadSchema("schema.yaml"));
+    }
+
+    /**
+     * @throws IllegalArgumentException when the options set a checkpoint, valid output or dead-letter file, concurrent
+     *                                  jobs would overwrite each other's files
+     */
+    public CsvEngine(int chunkSize, int queueCapacity, ProcessorOptions options, OpenApiSpec spec) {
+        if (options.getCheckpointFile() != null || options.getValidOutputFile() != null || options.getDeadLetterFile() != null) {
+            throw new IllegalArgumentException("Per-file outputs are passed to submit, not shared by all jobs");
+        }
+        this.chunkSize = chunkSize;
+        this.queueCapacity = queueCapacity;
+        this.options = options;
+        this.processorExecutor = options.getExecutionModel().newExecutor(options.getParallelism());
+        this.validator = new RowValidator(spec);
+        this.memoryBudget = new MemoryBudget(options.getMemoryBudgetBytes());
+    }
+
+    public MemoryBudget getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Processes a file without per-file outputs, see {@link #submit(Path, JobFiles, ChunkedFileProcessor.CsvLineConsumer)}.
+     */
+    public CompletableFuture<ChunkedFileProcessor> submit(Path file, ChunkedFileProcessor.CsvLineConsumer consumer) {
+        return submit(file, JobFiles.NONE, consumer);
+    }
+
+    /**
+     * Processes a file, completing with its processor once the run has finished so results of the run such as
+     * {@link ChunkedFileProcessor#aggregates()}, {@link ChunkedFileProcessor#quarantine()} and
+     * {@link ChunkedFileProcessor#duplicateKeys()} can be read.
+     */
+    public CompletableFuture<ChunkedFileProcessor> submit(Path file, JobFiles files, ChunkedFileProcessor.CsvLineConsumer consumer) {
+        ProcessorOptions jobOptions = options;
+        if (!files.equals(JobFiles.NONE)) {
+            jobOptions = options.copy();
+            jobOptions.setCheckpointFile(files.checkpointFile());
+            jobOptions.setValidOutputFile(files.validOutputFile());
+            jobOptions.setDeadLetterFile(files.deadLetterFile());
+        }
+        BufferPool pool = borrowPool();
+        ChunkedFileProcessor processor = new ChunkedFileProcessor(file, chunkSize, queueCapacity, consumer, jobOptions,
+                processorExecutor, ioExecutor, validator, pool, memoryBudget, false);
+        boolean async = false;
+        try {
+            if (Files.size(file) <= chunkSize) {
+                processor.runInline();
+                return CompletableFuture.completedFuture(processor);
+            }
+            CompletableFuture<ChunkedFileProcessor> job = CompletableFuture.supplyAsync(() -> {
+                try {
+                    processor.run();
+                    return processor;
+                } catch (IOException | InterruptedException e) {
+                    throw new CompletionException(e);
+                } finally {
+                    returnPool(pool, processor);
+                }
+            }, ioExecutor);
+            async = true;
+            return job;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            // an asynchronous run returns the pool itself once it is done
+            if (!async) {
+                returnPool(pool, processor);
+            }
+        }
+    }
+
+    /**
+     * Files written by a single job, {@code null} for the ones it does not write. See
+     * {@link ProcessorOptions#setCheckpointFile}, {@link ProcessorOptions#setValidOutputFile} and
+     * {@link ProcessorOptions#setDeadLetterFile}.
+     */
+    public record JobFiles(Path checkpointFile, Path validOutputFile, Path deadLetterFile) {
+
+        public static final JobFiles NONE = new JobFiles(null, null, null);
+    }
+
+    private BufferPool borrowPool() {
+        BufferPool pool = idlePools.poll();
+        return pool != null ? pool : new BufferPool(ChunkedFileProcessor.bufferSize(chunkSize, options),
+                ChunkedFileProcessor.bufferCount(queueCapacity, options.getReadAhead()), ChunkedFileProcessor.alignment(options));
+    }
+
+    private void returnPool(BufferPool pool, ChunkedFileProcessor processor) {
+        // an aborted job may not have released all of its buffers, do not hand such a pool to the next job
+        if (!processor.isShutdown()) {
+            idlePools.offer(pool);
+        }
+    }
+
+    @Override
+    public void close() {
+        // waits for all submitted jobs, however long they run
+        ioExecutor.close();
+        processorExecutor.close();
+    }
+}
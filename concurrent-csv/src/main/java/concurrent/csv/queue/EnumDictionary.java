@@ -0,0 +1,165 @@
+package concurrent.csv.queue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The values of a low-cardinality column, such as an enum of the schema, numbered by their position.
+ * <p>
+ * Field bytes are looked up without decoding them, through a perfect hash built with hash and displace: values are
+ * grouped into buckets by a first hash, and every bucket gets a seed for a second hash that places each of its values
+ * into a free slot of its own. A lookup hashes the length and three bytes of the field twice, then compares the field
+ * with the single candidate of its slot. Consumers can keep the returned {@linkplain #ordinal ordinal} as a small
+ * dictionary id instead of a String, see {@link RowCursor#getEnumOrdinal}.
+ */
+public final class EnumDictionary {
+
+    private static final int MAX_SEED = 1 << 16;
+
+    private final List<String> values;
+    private final byte[][] slots;
+    private final int[] ordinals;
+    private final int[] seeds;
+    // hash every byte, only when values agree in length and all sampled bytes
+    private final boolean hashAllBytes;
+
+    public EnumDictionary(Collection<String> values) {
+        this.values = List.copyOf(values);
+        byte[][] encoded = new byte[this.values.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = this.values.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        Layout layout = layout(encoded, false);
+        if (layout == null) {
+            layout = layout(encoded, true);
+        }
+        if (layout == null) {
+            throw new IllegalArgumentException("Duplicate values in " + values);
+        }
+        this.hashAllBytes = layout.hashAllBytes();
+        this.seeds = layout.seeds();
+        this.ordinals = layout.ordinals();
+        this.slots = new byte[ordinals.length][];
+        for (int slot = 0; slot < ordinals.length; slot++) {
+            if (ordinals[slot] >= 0) {
+                slots[slot] = encoded[ordinals[slot]];
+            }
+        }
+    }
+
+    private record Layout(boolean hashAllBytes, int[] seeds, int[] ordinals) {}
+
+    /**
+     * Places the values into a table of twice their count, the largest buckets first. {@code null} when values hash
+     * the same under every seed, which only duplicates do when all bytes are hashed.
+     */
+    private static Layout layout(byte[][] encoded, boolean allBytes) {
+        int[] ordinals = new int[powerOfTwo(encoded.length * 2)];
+        Arrays.fill(ordinals, -1);
+        int[] seeds = new int[Math.max(1, powerOfTwo(encoded.length) / 2)];
+        List<List<Integer>> buckets = new ArrayList<>();
+        for (int i = 0; i < seeds.length; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (int ordinal = 0; ordinal < encoded.length; ordinal++) {
+            buckets.get(hash(ByteBuffer.wrap(encoded[ordinal]), 0, encoded[ordinal].length, 0, allBytes) & (seeds.length - 1))
+                    .add(ordinal);
+        }
+        Integer[] order = new Integer[seeds.length];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+
+        int[] placed = new int[encoded.length];
+        for (int bucket : order) {
+            List<Integer> members = buckets.get(bucket);
+            if (members.isEmpty()) {
+                break;
+            }
+            boolean done = false;
+            for (int seed = 1; seed < MAX_SEED && !done; seed++) {
+                done = true;
+                int count = 0;
+                for (int ordinal : members) {
+                    int slot = hash(ByteBuffer.wrap(encoded[ordinal]), 0, encoded[ordinal].length, seed, allBytes)
+                            & (ordinals.length - 1);
+                    if (ordinals[slot] >= 0) {
+                        done = false;
+                        break;
+                    }
+                    ordinals[slot] = ordinal;
+                    placed[count++] = slot;
+                }
+                if (done) {
+                    seeds[bucket] = seed;
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        ordinals[placed[i]] = -1;
+                    }
+                }
+            }
+            if (!done) {
+                return null;
+            }
+        }
+        return new Layout(allBytes, seeds, ordinals);
+    }
+
+    private static int powerOfTwo(int minimum) {
+        return Math.max(1, Integer.highestOneBit(Math.max(1, minimum - 1)) << 1);
+    }
+
+    private static int hash(ByteBuffer buffer, int start, int end, int seed, boolean allBytes) {
+        int length = end - start;
+        int hash = seed * 0x9e3779b9 ^ length;
+        if (allBytes) {
+            for (int i = start; i < end; i++) {
+                hash = (hash ^ buffer.get(i)) * 0x01000193;
+            }
+        } else if (length > 0) {
+            hash = (hash ^ buffer.get(start)) * 0x01000193;
+            hash = (hash ^ buffer.get(start + length / 2)) * 0x01000193;
+            hash = (hash ^ buffer.get(end - 1)) * 0x01000193;
+        }
+        hash ^= hash >>> 15;
+        hash *= 0x2c1b3c6d;
+        return hash ^ hash >>> 12;
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public String value(int ordinal) {
+        return values.get(ordinal);
+    }
+
+    public List<String> values() {
+        return values;
+    }
+
+    /**
+     * Position of the value the bytes spell, {@code -1} when they are none of the values.
+     */
+    public int ordinal(ByteBuffer buffer, int start, int end) {
+        int bucket = hash(buffer, start, end, 0, hashAllBytes) & (seeds.length - 1);
+        int slot = hash(buffer, start, end, seeds[bucket], hashAllBytes) & (slots.length - 1);
+        byte[] candidate = slots[slot];
+        if (candidate == null || candidate.length != end - start) {
+            return -1;
+        }
+        for (int i = 0; i < candidate.length; i++) {
+            if (buffer.get(start + i) != candidate[i]) {
+                return -1;
+            }
+        }
+        return ordinals[slot];
+    }
+
+    public int ordinal(ByteSlice value) {
+        return ordinal(value.getBuffer(), value.getStart(), value.getEnd());
+    }
+}
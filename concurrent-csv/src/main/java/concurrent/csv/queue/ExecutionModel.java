@@ -0,0 +1,57 @@
+package concurrent.csv.queue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * How the CPU bound parse and validate stage is executed. Every model is limited to a fixed parallelism; the I/O
+ * bound reader and writer stages always stay on virtual threads.
+ * <p>
+ * A parse task may wait for the tasks of earlier chunks to count their lines. The reader submits the tasks in file
+ * order, so the predecessors a task waits for are always running or done, and a bounded pool of platform threads
+ * cannot deadlock on them.
+ */
+public enum ExecutionModel {
+
+    /**
+     * A fixed number of virtual threads. Parse tasks block while they wait for the line numbers of their predecessors
+     * in {@link LineSequencer.Slot#firstLineNumber()}, a virtual thread then releases its carrier instead of holding a
+     * worker.
+     */
+    VIRTUAL_THREADS {
+        @Override
+        public ExecutorService newExecutor(int parallelism) {
+            return Executors.newFixedThreadPool(parallelism, Thread.ofVirtual().name("csv-worker-", 0).factory());
+        }
+    },
+
+    /**
+     * A work-stealing {@link ForkJoinPool}.
+     */
+    FORK_JOIN {
+        @Override
+        public ExecutorService newExecutor(int parallelism) {
+            return new ForkJoinPool(parallelism);
+        }
+    },
+
+    /**
+     * A dedicated pool of daemon platform threads.
+     */
+    PLATFORM {
+        @Override
+        public ExecutorService newExecutor(int parallelism) {
+            return Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("csv-worker-", 0).daemon(true).factory());
+        }
+    };
+
+    public abstract ExecutorService newExecutor(int parallelism);
+
+    /**
+     * The processors available to this JVM. Since JDK 10 this honours container (cgroup) CPU limits.
+     */
+    public static int defaultParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+}
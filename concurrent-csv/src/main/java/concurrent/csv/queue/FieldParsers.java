@@ -0,0 +1,205 @@
+package concurrent.csv.queue;
+
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+
+/**
+ * Allocation free conversions of ASCII field bytes into primitives.
+ */
+public final class FieldParsers {
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+            10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+            1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    private FieldParsers() {
+    }
+
+    public static long parseLong(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i++) == '-';
+        }
+        if (i == end) {
+            throw new NumberFormatException("Not a number: " + ByteSlice.decode(buffer, start, end));
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("Not a long: " + ByteSlice.decode(buffer, start, end));
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a plain decimal such as {@code -1234.5} into its unscaled value at the given scale ({@code -123450} for
+     * scale 2). Fraction digits beyond the scale must be zero, otherwise an {@link ArithmeticException} is thrown.
+     */
+    public static long parseDecimalUnscaled(ByteBuffer buffer, int start, int end, int scale) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i++) == '-';
+        }
+        long value = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && fractionDigits == -1) {
+                fractionDigits = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Not a decimal: " + ByteSlice.decode(buffer, start, end));
+            }
+            digits++;
+            if (fractionDigits >= 0 && ++fractionDigits > scale) {
+                if (digit != 0) {
+                    throw new ArithmeticException("More than " + scale + " fraction digits: " + ByteSlice.decode(buffer, start, end));
+                }
+                continue;
+            }
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("Decimal out of range: " + ByteSlice.decode(buffer, start, end));
+            }
+            value = value * 10 + digit;
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Not a decimal: " + ByteSlice.decode(buffer, start, end));
+        }
+        int missing = scale - Math.max(0, Math.min(fractionDigits, scale));
+        if (missing >= POWERS_OF_TEN.length || value > Long.MAX_VALUE / POWERS_OF_TEN[missing]) {
+            throw new NumberFormatException("Decimal out of range: " + ByteSlice.decode(buffer, start, end));
+        }
+        value *= POWERS_OF_TEN[missing];
+        return negative ? -value : value;
+    }
+
+    public static boolean parseBoolean(ByteBuffer buffer, int start, int end) {
+        if (ByteSlice.equalsIgnoreCaseAscii(buffer, start, end, "true")) return true;
+        if (ByteSlice.equalsIgnoreCaseAscii(buffer, start, end, "false")) return false;
+        throw new IllegalArgumentException("Not a boolean: " + ByteSlice.decode(buffer, start, end));
+    }
+
+    /**
+     * Returned by {@link #tryParseEpochMillis} for bytes that are not a valid date-time.
+     */
+    public static final long INVALID_DATE_TIME = Long.MIN_VALUE;
+
+    /**
+     * Parses {@code yyyy-MM-ddTHH:mm:ss[.S{1,9}][Z|+HH:MM|-HH:MM]} into epoch milliseconds, a missing offset means UTC.
+     */
+    public static long parseEpochMillis(ByteBuffer buffer, int start, int end) {
+        long millis = tryParseEpochMillis(buffer, start, end);
+        if (millis == INVALID_DATE_TIME) {
+            throw new DateTimeException("Not an ISO date-time: " + ByteSlice.decode(buffer, start, end));
+        }
+        return millis;
+    }
+
+    /**
+     * Like {@link #parseEpochMillis} but returns {@link #INVALID_DATE_TIME} instead of throwing, for validation.
+     * Calendar ranges are checked for real: days per month including leap years, hours up to 23 and offsets within
+     * {@code -18:00} and {@code +18:00}. The layout is fixed up to the seconds, every component is read from its
+     * known position.
+     */
+    public static long tryParseEpochMillis(ByteBuffer buffer, int start, int end) {
+        if (end - start < 19 || buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-'
+                || buffer.get(start + 10) != 'T' || buffer.get(start + 13) != ':' || buffer.get(start + 16) != ':') {
+            return INVALID_DATE_TIME;
+        }
+        int year = digits(buffer, start, 4);
+        int month = digits(buffer, start + 5, 2);
+        int day = digits(buffer, start + 8, 2);
+        int hour = digits(buffer, start + 11, 2);
+        int minute = digits(buffer, start + 14, 2);
+        int second = digits(buffer, start + 17, 2);
+        // a non-digit makes its component negative
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return INVALID_DATE_TIME;
+        }
+
+        int i = start + 19;
+        int millis = 0;
+        if (i < end && buffer.get(i) == '.') {
+            int fractionStart = ++i;
+            while (i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9') {
+                if (i - fractionStart < 3) {
+                    millis = millis * 10 + (buffer.get(i) - '0');
+                }
+                i++;
+            }
+            int fractionDigits = i - fractionStart;
+            if (fractionDigits == 0 || fractionDigits > 9) {
+                return INVALID_DATE_TIME;
+            }
+            for (int k = fractionDigits; k < 3; k++) {
+                millis *= 10;
+            }
+        }
+
+        int offsetSeconds = 0;
+        if (i < end) {
+            byte sign = buffer.get(i);
+            if (sign == 'Z' && i + 1 == end) {
+                i++;
+            } else if ((sign == '+' || sign == '-') && i + 6 == end && buffer.get(i + 3) == ':') {
+                int offsetHours = digits(buffer, i + 1, 2);
+                int offsetMinutes = digits(buffer, i + 4, 2);
+                if (offsetHours < 0 || offsetMinutes < 0 || offsetMinutes > 59
+                        || offsetHours > 18 || (offsetHours == 18 && offsetMinutes > 0)) {
+                    return INVALID_DATE_TIME;
+                }
+                offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (sign == '-' ? -1 : 1);
+                i = end;
+            } else {
+                return INVALID_DATE_TIME;
+            }
+        }
+
+        long epochSeconds = epochDay(year, month, day) * 86_400L + hour * 3600L + minute * 60L + second - offsetSeconds;
+        return epochSeconds * 1000L + millis;
+    }
+
+    // value of count ASCII digits, -1 if one of them is not a digit
+    static int digits(ByteBuffer buffer, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    static int daysInMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date (H. Hinnant's days_from_civil).
+     */
+    static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468L;
+    }
+}
@@ -0,0 +1,232 @@
+package concurrent.csv.queue;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Count, sum, minimum and maximum of a decimal column per distinct key, see {@link GroupBy}.
+ * <p>
+ * An open addressing hash table over the raw key bytes. The key fields of a group are stored once, length prefixed,
+ * in a shared byte array and the aggregates live in parallel {@code long} arrays, so adding a row to an existing
+ * group allocates nothing. Sums are kept as unscaled longs and are exact; a sum that no longer fits fails with an
+ * {@link ArithmeticException}.
+ * <p>
+ * Not thread safe. Workers fill one table per chunk which the writer {@link #merge merges} in file order.
+ */
+public final class GroupAggregates {
+
+    /**
+     * Aggregates of one group, {@code min} and {@code max} are {@code null} when the group has no values.
+     */
+    public record Group(List<String> key, long count, BigDecimal sum, BigDecimal min, BigDecimal max) {}
+
+    private static final int EMPTY = -1;
+
+    private final int keyFields;
+    private final int scale;
+    private int[] slots;
+    private int size;
+    private long skippedRows;
+    private int[] hashes;
+    private int[] keyOffsets;
+    private byte[] keyBytes;
+    private int keyBytesUsed;
+    private long[] counts;
+    private long[] valueCounts;
+    private long[] sums;
+    private long[] mins;
+    private long[] maxs;
+    // encoded key of the row being added
+    private byte[] scratch = new byte[64];
+
+    GroupAggregates(int keyFields, int scale) {
+        this.keyFields = keyFields;
+        this.scale = scale;
+        int capacity = 16;
+        this.slots = new int[capacity * 2];
+        Arrays.fill(slots, EMPTY);
+        this.hashes = new int[capacity];
+        this.keyOffsets = new int[capacity + 1];
+        this.keyBytes = new byte[capacity * 16];
+        this.counts = new long[capacity];
+        this.valueCounts = new long[capacity];
+        this.sums = new long[capacity];
+        this.mins = new long[capacity];
+        this.maxs = new long[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int scale() {
+        return scale;
+    }
+
+    /**
+     * Rows left out because their value was not a decimal at the scale.
+     */
+    public long skippedRows() {
+        return skippedRows;
+    }
+
+    void skip() {
+        skippedRows++;
+    }
+
+    /**
+     * Adds one row with its key read from {@code keyColumns}. Rows without a value only count.
+     */
+    void add(ColumnarRows rows, ByteBuffer buffer, int row, int[] keyColumns, boolean hasValue, long value) {
+        int length = 0;
+        for (int column : keyColumns) {
+            int start = rows.fieldStart(row, column);
+            int end = rows.fieldEnd(row, column);
+            if (start < 0) {
+                start = end = 0;
+            } else if (end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"') {
+                start++;
+                end--;
+            }
+            int fieldLength = end - start;
+            if (length + 4 + fieldLength > scratch.length) {
+                scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, length + 4 + fieldLength));
+            }
+            length = putLength(scratch, length, fieldLength);
+            buffer.get(start, scratch, length, fieldLength);
+            length += fieldLength;
+        }
+        int group = findOrInsert(scratch, 0, length, hash(scratch, 0, length));
+        counts[group]++;
+        if (hasValue) {
+            accumulate(group, 1, value, value, value);
+        }
+    }
+
+    /**
+     * Folds the groups of {@code other}, built with the same key columns and scale, into this table.
+     */
+    public void merge(GroupAggregates other) {
+        skippedRows += other.skippedRows;
+        for (int i = 0; i < other.size; i++) {
+            int from = other.keyOffsets[i];
+            int group = findOrInsert(other.keyBytes, from, other.keyOffsets[i + 1] - from, other.hashes[i]);
+            counts[group] += other.counts[i];
+            if (other.valueCounts[i] > 0) {
+                accumulate(group, other.valueCounts[i], other.sums[i], other.mins[i], other.maxs[i]);
+            }
+        }
+    }
+
+    /**
+     * Decodes all groups, in the order they were first seen.
+     */
+    public List<Group> groups() {
+        List<Group> groups = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            List<String> key = new ArrayList<>(keyFields);
+            int position = keyOffsets[i];
+            for (int field = 0; field < keyFields; field++) {
+                int length = getLength(keyBytes, position);
+                position += 4;
+                key.add(new String(keyBytes, position, length, StandardCharsets.UTF_8));
+                position += length;
+            }
+            boolean values = valueCounts[i] > 0;
+            groups.add(new Group(List.copyOf(key), counts[i], BigDecimal.valueOf(sums[i], scale),
+                    values ? BigDecimal.valueOf(mins[i], scale) : null, values ? BigDecimal.valueOf(maxs[i], scale) : null));
+        }
+        return groups;
+    }
+
+    private void accumulate(int group, long valueCount, long sum, long min, long max) {
+        if (valueCounts[group] == 0) {
+            mins[group] = Long.MAX_VALUE;
+            maxs[group] = Long.MIN_VALUE;
+        }
+        valueCounts[group] += valueCount;
+        sums[group] = Math.addExact(sums[group], sum);
+        mins[group] = Math.min(mins[group], min);
+        maxs[group] = Math.max(maxs[group], max);
+    }
+
+    private int findOrInsert(byte[] key, int from, int length, int hash) {
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int group = slots[slot];
+            if (group == EMPTY) {
+                group = insert(key, from, length, hash);
+                slots[slot] = group;
+                if (size * 2 > slots.length) {
+                    rehash();
+                }
+                return group;
+            }
+            int offset = keyOffsets[group];
+            if (hashes[group] == hash && keyOffsets[group + 1] - offset == length
+                    && Arrays.equals(keyBytes, offset, offset + length, key, from, from + length)) {
+                return group;
+            }
+        }
+    }
+
+    private int insert(byte[] key, int from, int length, int hash) {
+        if (size + 1 == hashes.length) {
+            int capacity = hashes.length * 2;
+            hashes = Arrays.copyOf(hashes, capacity);
+            keyOffsets = Arrays.copyOf(keyOffsets, capacity + 1);
+            counts = Arrays.copyOf(counts, capacity);
+            valueCounts = Arrays.copyOf(valueCounts, capacity);
+            sums = Arrays.copyOf(sums, capacity);
+            mins = Arrays.copyOf(mins, capacity);
+            maxs = Arrays.copyOf(maxs, capacity);
+        }
+        if (keyBytesUsed + length > keyBytes.length) {
+            keyBytes = Arrays.copyOf(keyBytes, Math.max(keyBytes.length * 2, keyBytesUsed + length));
+        }
+        System.arraycopy(key, from, keyBytes, keyBytesUsed, length);
+        keyBytesUsed += length;
+        int group = size++;
+        hashes[group] = hash;
+        keyOffsets[group + 1] = keyBytesUsed;
+        return group;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        Arrays.fill(slots, EMPTY);
+        int mask = slots.length - 1;
+        for (int group = 0; group < size; group++) {
+            int slot = hashes[group] & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = group;
+        }
+    }
+
+    private static int hash(byte[] key, int from, int length) {
+        int hash = 0x811c9dc5;
+        for (int i = from; i < from + length; i++) {
+            hash = (hash ^ key[i]) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int putLength(byte[] target, int position, int length) {
+        target[position] = (byte) (length >>> 24);
+        target[position + 1] = (byte) (length >>> 16);
+        target[position + 2] = (byte) (length >>> 8);
+        target[position + 3] = (byte) length;
+        return position + 4;
+    }
+
+    private static int getLength(byte[] source, int position) {
+        return (source[position] & 0xff) << 24 | (source[position + 1] & 0xff) << 16
+                | (source[position + 2] & 0xff) << 8 | source[position + 3] & 0xff;
+    }
+}
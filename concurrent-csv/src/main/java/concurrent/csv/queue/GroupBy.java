@@ -0,0 +1,130 @@
+package concurrent.csv.queue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Grouped aggregation computed by the parse workers, see {@link ProcessorOptions#setGroupBy}.
+ * <p>
+ * Every worker aggregates the rows of its chunk into a {@link GroupAggregates} table keyed by the raw bytes of the key
+ * fields, available to the consumer as {@link ChunkedFileProcessor.ChunkResult#aggregates()}. The writer merges the
+ * chunk tables into the totals of the run, {@link ChunkedFileProcessor#aggregates()}. The consumer thread only merges
+ * one small table per chunk instead of touching every row, so throughput scales with the workers.
+ * <pre>{@code
+ * new GroupBy()
+ *         .by("currency")
+ *         .by("payer_ms")
+ *         .aggregate("amount", 2);
+ * }</pre>
+ */
+public final class GroupBy {
+
+    private record Column(int index, String property) {
+        int resolve(ToIntFunction<String> columnIndex) {
+            return property != null ? columnIndex.applyAsInt(property) : index;
+        }
+    }
+
+    private final List<Column> keys = new ArrayList<>();
+    private Column value;
+    private int scale;
+
+    public GroupBy by(int column) {
+        keys.add(new Column(column, null));
+        return this;
+    }
+
+    public GroupBy by(String property) {
+        keys.add(new Column(-1, property));
+        return this;
+    }
+
+    /**
+     * Decimal column whose count, sum, minimum and maximum are computed, as unscaled values at {@code scale}. Rows
+     * whose value has more significant fraction digits are left out.
+     */
+    public GroupBy aggregate(int column, int scale) {
+        this.value = new Column(column, null);
+        this.scale = scale;
+        return this;
+    }
+
+    public GroupBy aggregate(String property, int scale) {
+        this.value = new Column(-1, property);
+        this.scale = scale;
+        return this;
+    }
+
+    Compiled compile(ToIntFunction<String> columnIndex) {
+        if (value == null) {
+            throw new IllegalStateException("No column to aggregate");
+        }
+        int[] keyColumns = keys.stream().mapToInt(key -> key.resolve(columnIndex)).toArray();
+        return new Compiled(keyColumns, value.resolve(columnIndex), scale);
+    }
+
+    static final class Compiled {
+
+        private final int[] keyColumns;
+        private final int valueColumn;
+        private final int scale;
+
+        private Compiled(int[] keyColumns, int valueColumn, int scale) {
+            this.keyColumns = keyColumns;
+            this.valueColumn = valueColumn;
+            this.scale = scale;
+        }
+
+        int[] columns() {
+            int[] columns = Arrays.copyOf(keyColumns, keyColumns.length + 1);
+            columns[keyColumns.length] = valueColumn;
+            return columns;
+        }
+
+        GroupAggregates newTable() {
+            return new GroupAggregates(keyColumns.length, scale);
+        }
+
+        /**
+         * Aggregates all rows of the chunk but the header into a new table. Rows whose value is not a decimal at the
+         * scale are left out and counted as {@linkplain GroupAggregates#skippedRows skipped}, a sum overflowing the
+         * unscaled {@code long} fails the chunk.
+         */
+        GroupAggregates aggregate(ChunkedFileProcessor.ChunkResult result) throws ChunkedFileProcessor.NonFatalProcessingException {
+            GroupAggregates table = newTable();
+            ColumnarRows rows = result.rows();
+            ByteBuffer buffer = result.buffer();
+            for (int row = 0; row < rows.rowCount(); row++) {
+                if (result.rowNumber(row) == 0) {
+                    continue;
+                }
+                int start = rows.fieldStart(row, valueColumn);
+                int end = rows.fieldEnd(row, valueColumn);
+                if (start >= 0 && end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"') {
+                    start++;
+                    end--;
+                }
+                boolean hasValue = start >= 0 && end > start;
+                long value = 0;
+                if (hasValue) {
+                    try {
+                        value = FieldParsers.parseDecimalUnscaled(buffer, start, end, scale);
+                    } catch (NumberFormatException | ArithmeticException e) {
+                        table.skip();
+                        continue;
+                    }
+                }
+                try {
+                    table.add(rows, buffer, row, keyColumns, hasValue, value);
+                } catch (ArithmeticException e) {
+                    throw new ChunkedFileProcessor.NonFatalProcessingException(
+                            "Sum overflow on line " + result.lineNumber(row), e);
+                }
+            }
+            return table;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package concurrent.csv.queue;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Assigns global line numbers to chunks whose lines are counted in parallel.
+ * <p>
+ * The reader takes one {@link Slot} per chunk, in file order. The worker of a chunk publishes the number of lines it
+ * found and then waits for its own first line number, which is the prefix sum of everything published by its
+ * predecessors. Nothing is scanned twice and no thread walks the chunks serially; a chunk only waits for its
+ * predecessors to finish counting, not for them to finish processing.
+ */
+public final class LineSequencer {
+
+    private final CompletableFuture<Long> aborted = new CompletableFuture<>();
+    private CompletableFuture<Long> next;
+
+    public LineSequencer(long firstLineNumber) {
+        this.next = CompletableFuture.completedFuture(firstLineNumber);
+    }
+
+    /**
+     * Slot of the next chunk in file order, must be called from a single thread.
+     */
+    public Slot next() {
+        CompletableFuture<Long> first = next;
+        next = new CompletableFuture<>();
+        return new Slot(first, next, aborted);
+    }
+
+    /**
+     * Releases every worker still waiting for a predecessor that will never publish.
+     */
+    public void abort(Throwable cause) {
+        aborted.completeExceptionally(cause);
+    }
+
+    public static final class Slot {
+
+        private final CompletableFuture<Long> first;
+        private final CompletableFuture<Long> next;
+        private final CompletableFuture<Long> aborted;
+
+        private Slot(CompletableFuture<Long> first, CompletableFuture<Long> next, CompletableFuture<Long> aborted) {
+            this.first = first;
+            this.next = next;
+            this.aborted = aborted;
+        }
+
+        /**
+         * Hands the line count of this chunk to its successor as soon as the first line number of this chunk is known.
+         */
+        public void publish(long lineCount) {
+            first.thenAccept(line -> next.complete(line + lineCount));
+        }
+
+        /**
+         * Waits until all predecessors have published their line counts.
+         *
+         * @throws CancellationException if the sequencer was aborted before that happened
+         */
+        public long firstLineNumber() throws InterruptedException {
+            try {
+                return first.isDone() ? first.get() : first.applyToEither(aborted, line -> line).get();
+            } catch (ExecutionException e) {
+                CancellationException cancelled = new CancellationException("line numbering was aborted");
+                cancelled.initCause(e.getCause());
+                throw cancelled;
+            }
+        }
+    }
+}
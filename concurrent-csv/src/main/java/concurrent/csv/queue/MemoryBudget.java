@@ -0,0 +1,91 @@
+package concurrent.csv.queue;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Byte based admission control for the chunks a processor has in flight.
+ * <p>
+ * The reader {@link #acquire(long) acquires} the raw bytes of every chunk before queueing it and blocks while the
+ * budget is exhausted. Workers {@link #reserve(long) reserve} the size of their parse results without blocking (a
+ * blocked worker could hold up the in-order writer that frees the budget), so the budget may be overshot by the
+ * results of the chunks already admitted. Everything is released when the consumer is done with the chunk. A chunk
+ * larger than the whole budget is still admitted once nothing else is in flight.
+ */
+public class MemoryBudget {
+
+    private final long limitBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private long usedBytes;
+    private long peakBytes;
+
+    public MemoryBudget(long limitBytes) {
+        this.limitBytes = limitBytes <= 0 ? Long.MAX_VALUE : limitBytes;
+    }
+
+    public void acquire(long bytes) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (usedBytes > 0 && usedBytes + bytes > limitBytes) {
+                released.await();
+            }
+            add(bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void reserve(long bytes) {
+        lock.lock();
+        try {
+            add(bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(long bytes) {
+        lock.lock();
+        try {
+            usedBytes -= bytes;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void add(long bytes) {
+        usedBytes += bytes;
+        peakBytes = Math.max(peakBytes, usedBytes);
+    }
+
+    public long getLimitBytes() {
+        return limitBytes;
+    }
+
+    public long getUsedBytes() {
+        lock.lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getPeakBytes() {
+        lock.lock();
+        try {
+            return peakBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Current usage as a fraction of the limit, 0 for an unlimited budget.
+     */
+    public double getUtilisation() {
+        return limitBytes == Long.MAX_VALUE ? 0 : (double) getUsedBytes() / limitBytes;
+    }
+}
@@ -0,0 +1,94 @@
+package concurrent.csv.queue;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Path;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * Drops file pages from the page cache once they have been processed, through {@code posix_fadvise} called with the
+ * foreign function API.
+ * <p>
+ * The advice applies to the cached pages of the file, not to a descriptor, so the advisor opens a descriptor of its
+ * own. Everywhere {@code posix_fadvise} cannot be called (not Linux, native access denied) it does nothing.
+ */
+final class PageCacheAdvisor implements AutoCloseable {
+
+    private static final int O_RDONLY = 0;
+    private static final int POSIX_FADV_DONTNEED = 4;
+
+    private static final MethodHandle OPEN;
+    private static final MethodHandle FADVISE;
+    private static final MethodHandle CLOSE;
+
+    static {
+        MethodHandle open = null;
+        MethodHandle fadvise = null;
+        MethodHandle close = null;
+        if (System.getProperty("os.name", "").startsWith("Linux")) {
+            try {
+                Linker linker = Linker.nativeLinker();
+                SymbolLookup libc = linker.defaultLookup();
+                open = linker.downcallHandle(libc.find("open").orElseThrow(),
+                        FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_INT, JAVA_INT), Linker.Option.firstVariadicArg(2));
+                fadvise = linker.downcallHandle(libc.find("posix_fadvise").orElseThrow(),
+                        FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_LONG, JAVA_LONG, JAVA_INT));
+                close = linker.downcallHandle(libc.find("close").orElseThrow(), FunctionDescriptor.of(JAVA_INT, JAVA_INT));
+            } catch (Throwable e) {
+                open = fadvise = close = null;
+            }
+        }
+        OPEN = open;
+        FADVISE = fadvise;
+        CLOSE = close;
+    }
+
+    private final int fd;
+
+    PageCacheAdvisor(Path file) {
+        this.fd = open(file);
+    }
+
+    private static int open(Path file) {
+        if (OPEN == null) {
+            return -1;
+        }
+        try (Arena arena = Arena.ofConfined()) {
+            return (int) OPEN.invokeExact(arena.allocateUtf8String(file.toAbsolutePath().toString()), O_RDONLY, 0);
+        } catch (Throwable e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Evicts {@code [offset, offset + length)} of the file from the page cache, the range has been consumed.
+     */
+    void dontNeed(long offset, long length) {
+        if (fd < 0) {
+            return;
+        }
+        try {
+            int ignored = (int) FADVISE.invokeExact(fd, offset, length, POSIX_FADV_DONTNEED);
+        } catch (Throwable e) {
+            // advice only, the read path does not depend on it
+        }
+    }
+
+    @Override
+    public void close() {
+        if (fd < 0) {
+            return;
+        }
+        try {
+            int ignored = (int) CLOSE.invokeExact(fd);
+        } catch (Throwable e) {
+            // nothing left to release
+        }
+    }
+}
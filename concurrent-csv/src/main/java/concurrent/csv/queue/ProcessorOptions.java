@@ -0,0 +1,261 @@
+package concurrent.csv.queue;
+
+import java.nio.file.Path;
+
+public class ProcessorOptions {
+    private ChunkedFileProcessor.ReadMode readMode = ChunkedFileProcessor.ReadMode.BUFFERED;
+    private long mappedWindowSize = 1024L * 1024 * 1024;
+    private boolean parallelSplitting;
+    private long memoryBudgetBytes;
+    private ExecutionModel executionModel = ExecutionModel.FORK_JOIN;
+    private int parallelism = ExecutionModel.defaultParallelism();
+    private boolean sidecarIndex;
+    private Path checkpointFile;
+    private long checkpointIntervalMillis = 10_000;
+    private int readAhead = 1;
+    private boolean dropPageCache;
+    private int[] projectedColumns;
+    private String[] projectedProperties;
+    private RowFilter rowFilter;
+    private GroupBy groupBy;
+    private String[] uniqueKey;
+    private boolean unorderedDelivery;
+    private Path validOutputFile;
+    private Path deadLetterFile;
+
+    /**
+     * Copy of these options, for jobs that share all settings but their per-file outputs.
+     */
+    public ProcessorOptions copy() {
+        ProcessorOptions copy = new ProcessorOptions();
+        copy.readMode = readMode;
+        copy.mappedWindowSize = mappedWindowSize;
+        copy.parallelSplitting = parallelSplitting;
+        copy.memoryBudgetBytes = memoryBudgetBytes;
+        copy.executionModel = executionModel;
+        copy.parallelism = parallelism;
+        copy.sidecarIndex = sidecarIndex;
+        copy.checkpointFile = checkpointFile;
+        copy.checkpointIntervalMillis = checkpointIntervalMillis;
+        copy.readAhead = readAhead;
+        copy.dropPageCache = dropPageCache;
+        copy.projectedColumns = projectedColumns;
+        copy.projectedProperties = projectedProperties;
+        copy.rowFilter = rowFilter;
+        copy.groupBy = groupBy;
+        copy.uniqueKey = uniqueKey;
+        copy.unorderedDelivery = unorderedDelivery;
+        copy.validOutputFile = validOutputFile;
+        copy.deadLetterFile = deadLetterFile;
+        return copy;
+    }
+
+    // Getters and setters
+    public ChunkedFileProcessor.ReadMode getReadMode() {
+        return readMode;
+    }
+
+    public void setReadMode(ChunkedFileProcessor.ReadMode readMode) {
+        this.readMode = readMode;
+    }
+
+    public long getMappedWindowSize() {
+        return mappedWindowSize;
+    }
+
+    public void setMappedWindowSize(long mappedWindowSize) {
+        this.mappedWindowSize = Math.min(mappedWindowSize, Integer.MAX_VALUE);
+    }
+
+    public boolean isParallelSplitting() {
+        return parallelSplitting;
+    }
+
+    public void setParallelSplitting(boolean parallelSplitting) {
+        this.parallelSplitting = parallelSplitting;
+    }
+
+    public long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    /**
+     * Upper bound for the raw chunk bytes plus parse results in flight, 0 (the default) means unlimited.
+     */
+    public void setMemoryBudgetBytes(long memoryBudgetBytes) {
+        this.memoryBudgetBytes = memoryBudgetBytes;
+    }
+
+    public ExecutionModel getExecutionModel() {
+        return executionModel;
+    }
+
+    public void setExecutionModel(ExecutionModel executionModel) {
+        this.executionModel = executionModel;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism > 0 ? parallelism : ExecutionModel.defaultParallelism();
+    }
+
+    public boolean isSidecarIndex() {
+        return sidecarIndex;
+    }
+
+    /**
+     * Reuses the chunk boundaries of a matching {@link SidecarIndex} next to the file, or writes one after a complete
+     * run when there is none.
+     */
+    public void setSidecarIndex(boolean sidecarIndex) {
+        this.sidecarIndex = sidecarIndex;
+    }
+
+    public Path getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * File the acknowledged progress of a run is written to, see {@link ChunkedFileProcessor#resumeFrom}. Each
+     * processed file needs a checkpoint file of its own. {@code null} (the default) disables checkpoints.
+     */
+    public void setCheckpointFile(Path checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    public long getCheckpointIntervalMillis() {
+        return checkpointIntervalMillis;
+    }
+
+    public void setCheckpointIntervalMillis(long checkpointIntervalMillis) {
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+    }
+
+    public int getReadAhead() {
+        return readAhead;
+    }
+
+    /**
+     * Number of block reads kept in flight by the buffered reader, 1 (the default) reads one block at a time on the
+     * reader thread. Deeper read-ahead pays off on storage where request latency rather than bandwidth is the limit.
+     */
+    public void setReadAhead(int readAhead) {
+        this.readAhead = Math.max(1, readAhead);
+    }
+
+    public boolean isDropPageCache() {
+        return dropPageCache;
+    }
+
+    /**
+     * Evicts every chunk from the page cache once the consumer is done with it ({@code posix_fadvise} on Linux, a
+     * no-op elsewhere). Keeps one-shot ingests in {@link ChunkedFileProcessor.ReadMode#BUFFERED} or
+     * {@link ChunkedFileProcessor.ReadMode#MEMORY_MAPPED} mode from pushing other data out of the cache;
+     * {@link ChunkedFileProcessor.ReadMode#DIRECT} does not populate it in the first place.
+     */
+    public void setDropPageCache(boolean dropPageCache) {
+        this.dropPageCache = dropPageCache;
+    }
+
+    public int[] getProjectedColumns() {
+        return projectedColumns;
+    }
+
+    /**
+     * Restricts tokenizing, validation and delivery to these column indices. Unprojected columns are still counted
+     * but their offsets are not recorded and they read as missing. {@code null} (the default) keeps all columns.
+     */
+    public void setProjectedColumns(int... projectedColumns) {
+        this.projectedColumns = projectedColumns;
+    }
+
+    public String[] getProjectedProperties() {
+        return projectedProperties;
+    }
+
+    /**
+     * Same as {@link #setProjectedColumns} with the columns named by their schema property, both projections are
+     * combined.
+     */
+    public void setProjectedProperties(String... projectedProperties) {
+        this.projectedProperties = projectedProperties;
+    }
+
+    public RowFilter getRowFilter() {
+        return rowFilter;
+    }
+
+    /**
+     * Drops rows failing the filter while the chunk is tokenized, they are never validated or delivered. Line numbers
+     * and checkpoints still count them. {@code null} (the default) keeps all rows.
+     */
+    public void setRowFilter(RowFilter rowFilter) {
+        this.rowFilter = rowFilter;
+    }
+
+    public GroupBy getGroupBy() {
+        return groupBy;
+    }
+
+    /**
+     * Aggregates the rows on the parse workers, see {@link GroupBy}. {@code null} (the default) aggregates nothing.
+     */
+    public void setGroupBy(GroupBy groupBy) {
+        this.groupBy = groupBy;
+    }
+
+    public String[] getUniqueKey() {
+        return uniqueKey;
+    }
+
+    /**
+     * Schema properties whose combination has to be unique across the file. Duplicates are reported with the lines of
+     * both rows, see {@link concurrent.csv.queue.validation.UniqueKeyValidator}. {@code null} (the default) skips the
+     * check.
+     */
+    public void setUniqueKey(String... uniqueKey) {
+        this.uniqueKey = uniqueKey;
+    }
+
+    public boolean isUnorderedDelivery() {
+        return unorderedDelivery;
+    }
+
+    /**
+     * Hands every chunk to the consumer as soon as it is processed instead of in file order, a slow chunk no longer
+     * holds back the finished ones behind it. Consumers place chunks by {@link ChunkedFileProcessor.ChunkResult#sequence()}
+     * and {@link ChunkedFileProcessor.ChunkResult#firstRowNumber()}; checkpoints still only cover the gap-free prefix.
+     * No sidecar index is built by unordered runs.
+     */
+    public void setUnorderedDelivery(boolean unorderedDelivery) {
+        this.unorderedDelivery = unorderedDelivery;
+    }
+
+    public Path getValidOutputFile() {
+        return validOutputFile;
+    }
+
+    /**
+     * Receives a copy of every valid row when a {@link #setDeadLetterFile dead-letter file} is set, byte for byte as
+     * in the source file.
+     */
+    public void setValidOutputFile(Path validOutputFile) {
+        this.validOutputFile = validOutputFile;
+    }
+
+    public Path getDeadLetterFile() {
+        return deadLetterFile;
+    }
+
+    /**
+     * Quarantines rows failing validation into this file with their line numbers and error codes instead of only
+     * reporting them, see {@link Quarantine}. The consumer then only sees valid rows. {@code null} (the default)
+     * delivers all rows. No sidecar index is built by quarantining runs, their chunks no longer hold every row.
+     */
+    public void setDeadLetterFile(Path deadLetterFile) {
+        this.deadLetterFile = deadLetterFile;
+    }
+}
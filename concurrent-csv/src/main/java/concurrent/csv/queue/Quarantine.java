@@ -0,0 +1,130 @@
+package concurrent.csv.queue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Splits a file into its valid rows and a dead-letter file of the rows that failed validation, see
+ * {@link ProcessorOptions#setDeadLetterFile}.
+ * <p>
+ * Workers validate every row on its own and drop the invalid ones from the chunk, the consumer only sees valid rows.
+ * The writer then copies both sides straight from the source file with {@link FileChannel#transferTo}: adjacent valid
+ * rows are coalesced into one range, so a chunk without errors is a single copy and nothing is ever re-serialized.
+ * Every dead-letter line is {@code <line>,<errors>,<original row>}, the errors in the form
+ * {@code <column>:<code>} joined by {@code ;}.
+ * <p>
+ * Output follows delivery order, an {@linkplain ProcessorOptions#setUnorderedDelivery unordered} run writes the
+ * chunks in the order they completed. Chunks that fail as a whole are reported but written to neither file.
+ */
+public final class Quarantine implements AutoCloseable {
+
+    /**
+     * Invalid row of a chunk, {@code offset} and {@code length} cover the whole record in the source file.
+     */
+    public record Entry(long lineNumber, long offset, long length, String errors) {}
+
+    private final FileChannel source;
+    private final FileChannel valid;
+    private final FileChannel deadLetter;
+    private long validRows;
+    private long quarantinedRows;
+
+    /**
+     * Opens the outputs, replacing them unless {@code append} is set, which a resumed run does.
+     *
+     * @param validOutput receives the valid rows, {@code null} to only write the dead-letter file
+     */
+    Quarantine(Path file, Path validOutput, Path deadLetterFile, boolean append) throws IOException {
+        this.source = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            this.valid = validOutput != null ? openOutput(validOutput, append) : null;
+            this.deadLetter = openOutput(deadLetterFile, append);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static FileChannel openOutput(Path file, boolean append) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public long validRows() {
+        return validRows;
+    }
+
+    public long quarantinedRows() {
+        return quarantinedRows;
+    }
+
+    /**
+     * Length of the record including its line terminator.
+     */
+    static long recordLength(ChunkedFileProcessor.ChunkResult result, int row) {
+        ColumnarRows rows = result.rows();
+        ByteBuffer buffer = result.buffer();
+        int end = rows.rowEnd(row);
+        if (end < buffer.limit() && buffer.get(end) == '\r') end++;
+        if (end < buffer.limit() && buffer.get(end) == '\n') end++;
+        return end - rows.rowStart(row);
+    }
+
+    /**
+     * Writes the valid rows and the quarantined entries of a chunk, called by the writer before the chunk is
+     * released.
+     */
+    void write(ChunkedFileProcessor.ChunkResult result) throws IOException {
+        ColumnarRows rows = result.rows();
+        if (valid != null) {
+            long rangeStart = -1;
+            long rangeEnd = -1;
+            for (int row = 0; row < rows.rowCount(); row++) {
+                long start = result.rowOffset(row);
+                if (start != rangeEnd) {
+                    copy(rangeStart, rangeEnd - rangeStart, valid);
+                    rangeStart = start;
+                }
+                rangeEnd = start + recordLength(result, row);
+            }
+            copy(rangeStart, rangeEnd - rangeStart, valid);
+        }
+        validRows += rows.rowCount();
+
+        for (Entry entry : result.quarantined()) {
+            deadLetter.write(StandardCharsets.UTF_8.encode(entry.lineNumber() + "," + entry.errors() + ","));
+            copy(entry.offset(), entry.length(), deadLetter);
+            if (!endsWithLineFeed(entry)) {
+                deadLetter.write(ByteBuffer.wrap(new byte[]{'\n'}));
+            }
+            quarantinedRows++;
+        }
+    }
+
+    private void copy(long position, long count, FileChannel target) throws IOException {
+        while (count > 0) {
+            long transferred = source.transferTo(position, count, target);
+            if (transferred <= 0) {
+                throw new IOException("Source ended at " + position + " while copying rows");
+            }
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    private boolean endsWithLineFeed(Entry entry) throws IOException {
+        ByteBuffer last = ByteBuffer.allocate(1);
+        return entry.length() > 0 && source.read(last, entry.offset() + entry.length() - 1) == 1 && last.get(0) == '\n';
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (source; valid; deadLetter) {
+            // closes whatever was opened
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package concurrent.csv.queue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a sequence of file ranges with up to {@code depth} positional reads in flight.
+ * <p>
+ * Every range is read into a pooled buffer at {@code offset}, leaving the bytes in front free for the caller. Reads
+ * are issued as soon as a buffer is available and run concurrently on the given executor, {@link #next()} hands them
+ * back strictly in range order. On storage with a high per-request latency this keeps the device busy while the
+ * reader thread scans and submits the previous block. A depth of 1 reads synchronously on the calling thread.
+ * Ranges that do not fit into a pooled buffer are read into a one-off buffer.
+ * <p>
+ * With an {@code alignment} above 1 (direct I/O) every read starts and ends on a block boundary: the range is widened
+ * to whole blocks and {@link Block#offset()} points at the first byte of the requested range within the buffer.
+ */
+final class ReadAhead implements AutoCloseable {
+
+    record Block(BufferPool.Lease lease, ByteBuffer buffer, int offset, int length, long position) {
+        void release() {
+            if (lease != null) {
+                lease.release();
+            }
+        }
+    }
+
+    private final FileChannel channel;
+    private final Iterator<SpeculativeSplitter.Split> ranges;
+    private final BufferPool pool;
+    private final int offset;
+    private final int depth;
+    private final int alignment;
+    private final ExecutorService executor;
+    private final ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+
+    ReadAhead(FileChannel channel, Iterator<SpeculativeSplitter.Split> ranges, BufferPool pool, int offset, int depth,
+              int alignment, ExecutorService executor) {
+        this.channel = channel;
+        this.ranges = ranges;
+        this.pool = pool;
+        this.offset = offset;
+        this.depth = depth;
+        this.alignment = alignment;
+        this.executor = executor;
+    }
+
+    boolean hasNext() {
+        return !pending.isEmpty() || ranges.hasNext();
+    }
+
+    Block next() throws IOException, InterruptedException {
+        if (depth <= 1) {
+            SpeculativeSplitter.Split range = ranges.next();
+            BufferPool.Lease lease = acquire(range);
+            try {
+                return read(range, lease);
+            } catch (IOException e) {
+                if (lease != null) lease.release();
+                throw e;
+            }
+        }
+        fill();
+        Future<Block> next = pending.poll();
+        try {
+            Block block = next.get();
+            fill();
+            return block;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+            throw new IllegalStateException("Read failed", e.getCause());
+        }
+    }
+
+    private void fill() throws InterruptedException {
+        while (pending.size() < depth && ranges.hasNext()) {
+            SpeculativeSplitter.Split range = ranges.next();
+            BufferPool.Lease lease = acquire(range);
+            pending.add(executor.submit(() -> {
+                try {
+                    return read(range, lease);
+                } catch (IOException e) {
+                    if (lease != null) lease.release();
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+    }
+
+    private BufferPool.Lease acquire(SpeculativeSplitter.Split range) throws InterruptedException {
+        return offset + alignedLength(range) <= pool.getBufferSize() ? pool.acquire() : null;
+    }
+
+    private int lead(SpeculativeSplitter.Split range) {
+        return (int) (range.start() % alignment);
+    }
+
+    private int alignedLength(SpeculativeSplitter.Split range) {
+        int length = lead(range) + range.length();
+        return (length + alignment - 1) / alignment * alignment;
+    }
+
+    private Block read(SpeculativeSplitter.Split range, BufferPool.Lease lease) throws IOException {
+        int lead = lead(range);
+        int length = alignedLength(range);
+        ByteBuffer buffer = lease != null ? lease.buffer()
+                : alignment > 1 ? ByteBuffer.allocateDirect(offset + length + alignment).alignedSlice(alignment)
+                : ByteBuffer.allocate(offset + length);
+        buffer.limit(offset + length).position(offset);
+        long position = range.start() - lead;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            // a short read that is not block aligned can only mean end of file
+            if (read == -1 || read % alignment != 0) break;
+            position += read;
+        }
+        int valid = Math.max(0, Math.min(buffer.position() - offset - lead, range.length()));
+        return new Block(lease, buffer, offset + lead, valid, range.start());
+    }
+
+    /**
+     * Waits for the reads still in flight and returns their buffers to the pool.
+     */
+    @Override
+    public void close() {
+        for (Future<Block> read : pending) {
+            try {
+                read.get().release();
+            } catch (ExecutionException e) {
+                // the failed read has already released its buffer
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        pending.clear();
+    }
+}
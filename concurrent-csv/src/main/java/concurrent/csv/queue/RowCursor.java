@@ -0,0 +1,164 @@
+package concurrent.csv.queue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable flyweight walking the rows of a chunk.
+ * <p>
+ * One cursor can be {@link #reset} to chunk after chunk. The typed getters read the field bytes in place, so numeric,
+ * boolean and timestamp columns never become Strings. Quoted fields are accessed without their surrounding quotes;
+ * doubled quotes inside them are only un-escaped by {@link #getBytes} and {@link #getString}, and only when present.
+ * Reading a column the row does not have, or one the projection removed, throws an {@link IllegalArgumentException};
+ * {@link #hasField} tells beforehand.
+ */
+public final class RowCursor {
+
+    private ColumnarRows rows;
+    private ByteBuffer buffer;
+    private long firstLineNumber = 1;
+    private int row = -1;
+
+    public RowCursor reset(ChunkedFileProcessor.ChunkResult result) {
+        reset(result.rows(), result.buffer());
+        this.firstLineNumber = result.firstLineNumber();
+        return this;
+    }
+
+    public RowCursor reset(ColumnarRows rows, ByteBuffer buffer) {
+        this.rows = rows;
+        this.buffer = buffer;
+        this.firstLineNumber = 1;
+        this.row = -1;
+        return this;
+    }
+
+    public boolean next() {
+        if (row + 1 < rows.rowCount()) {
+            row++;
+            return true;
+        }
+        return false;
+    }
+
+    public RowCursor moveTo(int row) {
+        this.row = row;
+        return this;
+    }
+
+    public int row() {
+        return row;
+    }
+
+    /**
+     * File line of the current row, counted from line 1 of the chunk when the cursor was reset to bare rows.
+     */
+    public long lineNumber() {
+        return firstLineNumber + rows.recordOrdinal(row) + rows.lineBreaksBefore(row);
+    }
+
+    public int fieldCount() {
+        return rows.fieldCount(row);
+    }
+
+    /**
+     * Whether the current row holds the column and the projection kept it.
+     */
+    public boolean hasField(int column) {
+        return column >= 0 && column < rows.fieldCount(row) && rows.isProjected(column);
+    }
+
+    public boolean isQuoted(int column) {
+        int start = fieldStart(column);
+        int end = rows.fieldEnd(row, column);
+        return end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"';
+    }
+
+    public boolean isEmpty(int column) {
+        return contentEnd(column) == contentStart(column);
+    }
+
+    /**
+     * Offset of the first content byte of a column, after an opening quote.
+     */
+    public int contentStart(int column) {
+        return isQuoted(column) ? rows.fieldStart(row, column) + 1 : rows.fieldStart(row, column);
+    }
+
+    /**
+     * Offset after the last content byte of a column, before a closing quote.
+     */
+    public int contentEnd(int column) {
+        return isQuoted(column) ? rows.fieldEnd(row, column) - 1 : rows.fieldEnd(row, column);
+    }
+
+    private int fieldStart(int column) {
+        if (!hasField(column)) {
+            throw new IllegalArgumentException(column >= 0 && column < rows.fieldCount(row)
+                    ? "Column " + column + " was removed by the projection"
+                    : "Column " + column + " is missing from the row on line " + lineNumber() + ", which has "
+                    + rows.fieldCount(row) + " field(s)");
+        }
+        return rows.fieldStart(row, column);
+    }
+
+    public long getLong(int column) {
+        return FieldParsers.parseLong(buffer, contentStart(column), contentEnd(column));
+    }
+
+    public long getDecimalUnscaled(int column, int scale) {
+        return FieldParsers.parseDecimalUnscaled(buffer, contentStart(column), contentEnd(column), scale);
+    }
+
+    public boolean getBoolean(int column) {
+        return FieldParsers.parseBoolean(buffer, contentStart(column), contentEnd(column));
+    }
+
+    public long getEpochMillis(int column) {
+        return FieldParsers.parseEpochMillis(buffer, contentStart(column), contentEnd(column));
+    }
+
+    /**
+     * Dictionary id of a column, {@code -1} when it holds none of the values. Compares the raw bytes, values with
+     * doubled quotes do not match.
+     */
+    public int getEnumOrdinal(int column, EnumDictionary dictionary) {
+        return dictionary.ordinal(buffer, contentStart(column), contentEnd(column));
+    }
+
+    /**
+     * Copies the un-escaped UTF-8 bytes of a column into {@code dst} and returns their count.
+     */
+    public int getBytes(int column, byte[] dst) {
+        int start = contentStart(column);
+        int end = contentEnd(column);
+        if (!isQuoted(column)) {
+            buffer.get(start, dst, 0, end - start);
+            return end - start;
+        }
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            dst[length++] = b;
+            if (b == '"' && i + 1 < end && buffer.get(i + 1) == '"') {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    public String getString(int column) {
+        int start = contentStart(column);
+        int end = contentEnd(column);
+        byte[] bytes = new byte[end - start];
+        int length = getBytes(column, bytes);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Raw (still escaped) view of a column, decoded only if characters are requested.
+     */
+    public ByteSlice getText(int column, ByteSlice reuse) {
+        return reuse.wrap(buffer, contentStart(column), contentEnd(column));
+    }
+}
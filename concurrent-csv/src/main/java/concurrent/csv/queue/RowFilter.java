@@ -0,0 +1,134 @@
+package concurrent.csv.queue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Conjunction of field conditions evaluated on the raw bytes of every row right after it was tokenized, see
+ * {@link ProcessorOptions#setRowFilter}. Rows failing a condition are dropped from the chunk before anything is
+ * decoded or validated and never reach the consumer.
+ * <p>
+ * Conditions are tested cheapest first, so most rejected rows cost a single field comparison. Fields are passed
+ * without their surrounding quotes; doubled quotes inside them are left as they are.
+ * <pre>{@code
+ * new RowFilter()
+ *         .whereEquals("currency", "EUR")
+ *         .whereEqualsIgnoreCase("is_refund", "true");
+ * }</pre>
+ */
+public final class RowFilter {
+
+    @FunctionalInterface
+    public interface FieldPredicate {
+        boolean test(ByteBuffer buffer, int start, int end);
+    }
+
+    private record Condition(int column, String property, FieldPredicate predicate, int cost) {}
+
+    private final List<Condition> conditions = new ArrayList<>();
+
+    /**
+     * Adds a custom condition. {@code cost} is a relative estimate of its evaluation cost, the built-in comparisons
+     * cost the length of the literal they compare against.
+     */
+    public RowFilter where(int column, FieldPredicate predicate, int cost) {
+        conditions.add(new Condition(column, null, predicate, cost));
+        return this;
+    }
+
+    public RowFilter where(String property, FieldPredicate predicate, int cost) {
+        conditions.add(new Condition(-1, property, predicate, cost));
+        return this;
+    }
+
+    public RowFilter whereEquals(int column, String value) {
+        return where(column, equalTo(value), value.length());
+    }
+
+    public RowFilter whereEquals(String property, String value) {
+        return where(property, equalTo(value), value.length());
+    }
+
+    /**
+     * ASCII case-insensitive comparison, for flags such as {@code true}/{@code TRUE}.
+     */
+    public RowFilter whereEqualsIgnoreCase(int column, String value) {
+        return where(column, equalToIgnoreCase(value), value.length() + 1);
+    }
+
+    public RowFilter whereEqualsIgnoreCase(String property, String value) {
+        return where(property, equalToIgnoreCase(value), value.length() + 1);
+    }
+
+    private static FieldPredicate equalTo(String value) {
+        byte[] expected = value.getBytes(StandardCharsets.UTF_8);
+        return (buffer, start, end) -> {
+            if (end - start != expected.length) {
+                return false;
+            }
+            for (int i = 0; i < expected.length; i++) {
+                if (buffer.get(start + i) != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    private static FieldPredicate equalToIgnoreCase(String value) {
+        return (buffer, start, end) -> ByteSlice.equalsIgnoreCaseAscii(buffer, start, end, value);
+    }
+
+    /**
+     * Resolves property names to columns and orders the conditions by cost.
+     */
+    Compiled compile(ToIntFunction<String> columnIndex) {
+        List<Condition> ordered = new ArrayList<>(conditions);
+        ordered.sort(Comparator.comparingInt(Condition::cost));
+        int[] columns = new int[ordered.size()];
+        FieldPredicate[] predicates = new FieldPredicate[ordered.size()];
+        for (int i = 0; i < ordered.size(); i++) {
+            Condition condition = ordered.get(i);
+            columns[i] = condition.property() != null ? columnIndex.applyAsInt(condition.property()) : condition.column();
+            predicates[i] = condition.predicate();
+        }
+        return new Compiled(columns, predicates);
+    }
+
+    static final class Compiled {
+
+        private final int[] columns;
+        private final FieldPredicate[] predicates;
+
+        private Compiled(int[] columns, FieldPredicate[] predicates) {
+            this.columns = columns;
+            this.predicates = predicates;
+        }
+
+        int[] columns() {
+            return columns;
+        }
+
+        boolean test(ColumnarRows rows, int row, ByteBuffer buffer) {
+            for (int i = 0; i < columns.length; i++) {
+                int start = rows.fieldStart(row, columns[i]);
+                if (start < 0) {
+                    return false;
+                }
+                int end = rows.fieldEnd(row, columns[i]);
+                if (end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"') {
+                    start++;
+                    end--;
+                }
+                if (!predicates[i].test(buffer, start, end)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package concurrent.csv.queue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Compact index of a csv file stored next to it as {@code <file>.idx}.
+ * <p>
+ * It records the record aligned chunk boundaries of a previous run with the number of rows per chunk, plus the byte
+ * offset of every {@value #ROW_STRIDE}th row. A later run over the unchanged file starts reading at the known
+ * boundaries without any boundary detection, and {@link #seekToRow} finds any row after scanning at most
+ * {@value #ROW_STRIDE} rows. The index is keyed by file size and modification time and is ignored once either
+ * changes, or when it was written for a different chunk size.
+ * <p>
+ * Rows are counted from 0, the header being row 0.
+ */
+public final class SidecarIndex {
+
+    static final int ROW_STRIDE = 1024;
+    private static final int MAGIC = 0x43535649; // "CSVI"
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final long fileSize;
+    private final long lastModified;
+    private final int chunkSize;
+    private final List<SpeculativeSplitter.Split> splits;
+    private final long[] splitRows;
+    private final long[] strideOffsets;
+
+    private SidecarIndex(Path file, long fileSize, long lastModified, int chunkSize,
+                         List<SpeculativeSplitter.Split> splits, long[] splitRows, long[] strideOffsets) {
+        this.file = file;
+        this.fileSize = fileSize;
+        this.lastModified = lastModified;
+        this.chunkSize = chunkSize;
+        this.splits = splits;
+        this.splitRows = splitRows;
+        this.strideOffsets = strideOffsets;
+    }
+
+    public static Path pathFor(Path file) {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    /**
+     * Loads the sidecar of {@code file}, empty when there is none or it no longer matches the file.
+     */
+    public static Optional<SidecarIndex> load(Path file, int chunkSize) throws IOException {
+        long fileSize = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(pathFor(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return Optional.empty();
+            }
+            if (in.readLong() != fileSize || in.readLong() != lastModified || in.readInt() != chunkSize) {
+                return Optional.empty();
+            }
+            int splitCount = in.readInt();
+            List<SpeculativeSplitter.Split> splits = new ArrayList<>(splitCount);
+            long[] splitRows = new long[splitCount];
+            for (int i = 0; i < splitCount; i++) {
+                splits.add(new SpeculativeSplitter.Split(in.readLong(), in.readLong()));
+                splitRows[i] = in.readLong();
+            }
+            long[] strideOffsets = new long[in.readInt()];
+            for (int i = 0; i < strideOffsets.length; i++) {
+                strideOffsets[i] = in.readLong();
+            }
+            return Optional.of(new SidecarIndex(file, fileSize, lastModified, chunkSize, splits, splitRows, strideOffsets));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Writes the sidecar next to the file. A temporary file is moved into place, readers never see a partial index.
+     */
+    public void write() throws IOException {
+        Path target = pathFor(file);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fileSize);
+            out.writeLong(lastModified);
+            out.writeInt(chunkSize);
+            out.writeInt(splits.size());
+            for (int i = 0; i < splits.size(); i++) {
+                out.writeLong(splits.get(i).start());
+                out.writeLong(splits.get(i).end());
+                out.writeLong(splitRows[i]);
+            }
+            out.writeInt(strideOffsets.length);
+            for (long offset : strideOffsets) {
+                out.writeLong(offset);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public List<SpeculativeSplitter.Split> splits() {
+        return splits;
+    }
+
+    public long splitRows(int split) {
+        return splitRows[split];
+    }
+
+    public long rowCount() {
+        return Arrays.stream(splitRows).sum();
+    }
+
+    /**
+     * Byte offset of the first byte of {@code row}. Starts at the closest indexed row and scans the records in
+     * between.
+     */
+    public long seekToRow(FileChannel channel, long row) throws IOException {
+        if (row < 0 || row >= rowCount()) {
+            throw new IndexOutOfBoundsException("Row " + row + " is outside of the " + rowCount() + " indexed rows");
+        }
+        long position = strideOffsets[(int) (row / ROW_STRIDE)];
+        long remaining = row % ROW_STRIDE;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        boolean inQuotes = false;
+        while (remaining > 0) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read == -1) break;
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') inQuotes = !inQuotes;
+                if (b == '\n' && !inQuotes && --remaining == 0) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return position;
+    }
+
+    static Builder builder(Path file, int chunkSize) throws IOException {
+        return new Builder(file, Files.size(file), Files.getLastModifiedTime(file).toMillis(), chunkSize);
+    }
+
+    /**
+     * Collects the chunks of a run in file order.
+     */
+    static final class Builder {
+
+        private final Path file;
+        private final long fileSize;
+        private final long lastModified;
+        private final int chunkSize;
+        private final List<SpeculativeSplitter.Split> splits = new ArrayList<>();
+        private long[] splitRows = new long[16];
+        private long[] strideOffsets = new long[16];
+        private int strideCount;
+        private long rows;
+
+        private Builder(Path file, long fileSize, long lastModified, int chunkSize) {
+            this.file = file;
+            this.fileSize = fileSize;
+            this.lastModified = lastModified;
+            this.chunkSize = chunkSize;
+        }
+
+        void add(ChunkedFileProcessor.ChunkResult result) {
+            ColumnarRows chunkRows = result.rows();
+            long start = result.fileOffset();
+            if (splits.size() == splitRows.length) {
+                splitRows = Arrays.copyOf(splitRows, splitRows.length * 2);
+            }
+            splitRows[splits.size()] = chunkRows.rowCount();
+            splits.add(new SpeculativeSplitter.Split(start, start + result.buffer().remaining()));
+
+            // first row of this chunk that lands on the stride
+            long next = (long) strideCount * ROW_STRIDE;
+            for (long row = next; row < rows + chunkRows.rowCount(); row += ROW_STRIDE) {
+                if (strideCount == strideOffsets.length) {
+                    strideOffsets = Arrays.copyOf(strideOffsets, strideCount * 2);
+                }
+                strideOffsets[strideCount++] = result.rowOffset((int) (row - rows));
+            }
+            rows += chunkRows.rowCount();
+        }
+
+        SidecarIndex build() {
+            return new SidecarIndex(file, fileSize, lastModified, chunkSize, List.copyOf(splits),
+                    Arrays.copyOf(splitRows, splits.size()), Arrays.copyOf(strideOffsets, strideCount));
+        }
+    }
+}
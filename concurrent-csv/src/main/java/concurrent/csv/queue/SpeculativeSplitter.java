@@ -0,0 +1,110 @@
+package concurrent.csv.queue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Finds record aligned split points of a csv file in parallel.
+ * <p>
+ * The file is cut at fixed offsets and every range is scanned by its own worker without knowing whether the range
+ * starts inside a quoted field. The worker therefore records the result for both possible start states: the first
+ * record boundary assuming the range starts outside quotes, the first one assuming it starts inside quotes, and the
+ * quote parity of the whole range. A sequential fix-up pass over the (few) range results then picks the correct
+ * interpretation for every range. Escaped quotes ({@code ""}) toggle the parity twice and newlines inside quoted
+ * fields never count as boundaries, so the result is exact for RFC 4180 input.
+ */
+public class SpeculativeSplitter {
+
+    public record Split(long start, long end) {
+        public int length() {
+            return (int) (end - start);
+        }
+    }
+
+    record RangeScan(boolean oddQuotes, long boundaryOutsideQuotes, long boundaryInsideQuotes) {}
+
+    public static List<Split> split(FileChannel channel, long fileSize, int chunkSize, ExecutorService executor)
+            throws IOException, InterruptedException {
+        return split(channel, 0, fileSize, chunkSize, executor);
+    }
+
+    /**
+     * Splits {@code [from, fileSize)}, {@code from} has to be a record boundary.
+     */
+    public static List<Split> split(FileChannel channel, long from, long fileSize, int chunkSize, ExecutorService executor)
+            throws IOException, InterruptedException {
+        List<Future<RangeScan>> scans = new ArrayList<>();
+        for (long start = from; start < fileSize; start += chunkSize) {
+            final long rangeStart = start;
+            final int rangeSize = (int) Math.min(chunkSize, fileSize - start);
+            scans.add(executor.submit(() -> scanRange(channel.map(FileChannel.MapMode.READ_ONLY, rangeStart, rangeSize), rangeStart)));
+        }
+
+        List<Split> splits = new ArrayList<>();
+        boolean inQuotes = false;
+        long splitStart = from;
+        try {
+            for (int i = 0; i < scans.size(); i++) {
+                RangeScan scan = scans.get(i).get();
+                if (i > 0) {
+                    long boundary = inQuotes ? scan.boundaryInsideQuotes() : scan.boundaryOutsideQuotes();
+                    if (boundary != -1 && boundary > splitStart && boundary < fileSize) {
+                        splits.add(new Split(splitStart, boundary));
+                        splitStart = boundary;
+                    }
+                }
+                inQuotes ^= scan.oddQuotes();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IllegalStateException("Range scan failed", e.getCause());
+        }
+        if (splitStart < fileSize) {
+            splits.add(new Split(splitStart, fileSize));
+        }
+        return splits;
+    }
+
+    /**
+     * The splits of a previous run that lie at or after the record boundary {@code from}; a split containing
+     * {@code from} is cut there.
+     */
+    public static List<Split> from(List<Split> splits, long from) {
+        List<Split> remaining = new ArrayList<>();
+        for (Split split : splits) {
+            if (split.end() > from) {
+                remaining.add(split.start() < from ? new Split(from, split.end()) : split);
+            }
+        }
+        return remaining;
+    }
+
+    static RangeScan scanRange(ByteBuffer range, long rangeStart) {
+        StructuralScanner.BlockReader block = StructuralScanner.get().reader(range);
+        long carry = 0;
+        long outside = -1;
+        long inside = -1;
+        int limit = range.limit();
+        for (int offset = range.position(); offset < limit; offset += StructuralScanner.BLOCK) {
+            block.load(offset, limit);
+            // quote parity up to every byte, assuming the range was entered outside quotes
+            long parity = StructuralScanner.prefixXor(block.quotes) ^ carry;
+            carry = parity >> 63;
+            long outsideBreaks = block.newlines & ~parity;
+            if (outside == -1 && outsideBreaks != 0) {
+                outside = rangeStart + offset + Long.numberOfTrailingZeros(outsideBreaks) + 1;
+            }
+            long insideBreaks = block.newlines & parity;
+            if (inside == -1 && insideBreaks != 0) {
+                inside = rangeStart + offset + Long.numberOfTrailingZeros(insideBreaks) + 1;
+            }
+        }
+        return new RangeScan(carry != 0, outside, inside);
+    }
+}
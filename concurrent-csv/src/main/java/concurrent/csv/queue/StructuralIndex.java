@@ -0,0 +1,46 @@
+package concurrent.csv.queue;
+
+import java.util.Arrays;
+
+/**
+ * Positions of the unquoted delimiters and line breaks of a chunk, in file order, plus the number of line breaks
+ * inside quoted fields which are not structural but still count as lines of the file.
+ */
+public final class StructuralIndex {
+
+    private int[] positions;
+    private int size;
+    private int quotedLineBreaks;
+
+    public StructuralIndex(int expectedSize) {
+        this.positions = new int[Math.max(16, expectedSize)];
+    }
+
+    void add(int position) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size + (size >> 1));
+        }
+        positions[size++] = position;
+    }
+
+    public int get(int i) {
+        return positions[i];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int quotedLineBreaks() {
+        return quotedLineBreaks;
+    }
+
+    void addQuotedLineBreaks(int count) {
+        quotedLineBreaks += count;
+    }
+
+    public void clear() {
+        size = 0;
+        quotedLineBreaks = 0;
+    }
+}
@@ -0,0 +1,161 @@
+package concurrent.csv.queue;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Structural indexing kernel shared by the tokenizer and the split detection.
+ * <p>
+ * Input is processed in blocks of 64 bytes. For every block an implementation produces one bit mask per structural
+ * character class (quote, delimiter, {@code \n}, {@code \r}). The in-quote region of a block is then the prefix-XOR
+ * of its quote mask, carried over from the previous block, and the structural positions are the delimiter and line
+ * break bits outside of it. Escaped quotes ({@code ""}) toggle the carry twice and therefore need no special case.
+ * <p>
+ * {@link #create()} picks the Vector API implementation when {@code jdk.incubator.vector} is available and falls
+ * back to SWAR scanning of 64 bit words otherwise.
+ */
+public abstract class StructuralScanner {
+
+    static final int BLOCK = 64;
+
+    private static final StructuralScanner INSTANCE = create();
+
+    public static StructuralScanner get() {
+        return INSTANCE;
+    }
+
+    static StructuralScanner create() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return new VectorStructuralScanner();
+            } catch (LinkageError | RuntimeException e) {
+                // incubator module present but not usable on this platform
+            }
+        }
+        return new SwarStructuralScanner();
+    }
+
+    abstract BlockReader reader(ByteBuffer buffer);
+
+    /**
+     * Masks of one block, bit {@code i} stands for byte {@code offset + i}.
+     */
+    abstract static class BlockReader {
+        final ByteBuffer buffer;
+        long quotes;
+        long delimiters;
+        long newlines;
+        long returns;
+
+        BlockReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * Loads the full 64 byte block starting at {@code offset}.
+         */
+        abstract void load(int offset);
+
+        /**
+         * Loads a partial block {@code [offset, to)}, bits beyond {@code to} stay clear.
+         */
+        void loadTail(int offset, int to) {
+            quotes = delimiters = newlines = returns = 0;
+            for (int i = offset; i < to; i++) {
+                long bit = 1L << (i - offset);
+                switch (buffer.get(i)) {
+                    case '"' -> quotes |= bit;
+                    case ',' -> delimiters |= bit;
+                    case '\n' -> newlines |= bit;
+                    case '\r' -> returns |= bit;
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        void load(int offset, int to) {
+            if (to - offset >= BLOCK) {
+                load(offset);
+            } else {
+                loadTail(offset, to);
+            }
+        }
+    }
+
+    /**
+     * Inclusive prefix-XOR: bit {@code i} of the result is the parity of the quotes at positions {@code 0..i}.
+     */
+    static long prefixXor(long quotes) {
+        quotes ^= quotes << 1;
+        quotes ^= quotes << 2;
+        quotes ^= quotes << 4;
+        quotes ^= quotes << 8;
+        quotes ^= quotes << 16;
+        quotes ^= quotes << 32;
+        return quotes;
+    }
+
+    /**
+     * Appends the positions of all unquoted delimiters and line breaks in {@code [from, to)} to the index and counts
+     * the quoted line breaks the way the tokenizer ends rows: {@code \n}, a lone {@code \r} and {@code \r\n} are one
+     * line break each. The range is expected to start outside of a quoted field.
+     */
+    public final StructuralIndex index(ByteBuffer buffer, int from, int to, StructuralIndex index) {
+        BlockReader block = reader(buffer);
+        long carry = 0;
+        long returnCarry = 0;
+        for (int offset = from; offset < to; offset += BLOCK) {
+            block.load(offset, to);
+            long inside = prefixXor(block.quotes) ^ carry;
+            carry = inside >> 63;
+            long structural = (block.delimiters | block.newlines | block.returns) & ~inside;
+            long quotedBreaks = (block.returns | block.newlines & ~(block.returns << 1 | returnCarry)) & inside;
+            returnCarry = block.returns >>> 63;
+            if (quotedBreaks != 0) {
+                index.addQuotedLineBreaks(Long.bitCount(quotedBreaks));
+            }
+            while (structural != 0) {
+                index.add(offset + Long.numberOfTrailingZeros(structural));
+                structural &= structural - 1;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Position after the last unquoted {@code \n} in {@code [from, to)}, {@code -1} when the range holds no complete
+     * record. The range is expected to start outside of a quoted field; scanning forward from there is what tells a
+     * line break inside a quoted field from one that ends a record.
+     */
+    public final int lastRecordEnd(ByteBuffer buffer, int from, int to) {
+        BlockReader block = reader(buffer);
+        long carry = 0;
+        int end = -1;
+        for (int offset = from; offset < to; offset += BLOCK) {
+            block.load(offset, to);
+            long inside = prefixXor(block.quotes) ^ carry;
+            carry = inside >> 63;
+            long breaks = block.newlines & ~inside;
+            if (breaks != 0) {
+                end = offset + BLOCK - Long.numberOfLeadingZeros(breaks);
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Counts the unquoted {@code \n} in {@code [from, to)}, which is the number of terminated records.
+     */
+    public final int countRecords(ByteBuffer buffer, int from, int to) {
+        BlockReader block = reader(buffer);
+        long carry = 0;
+        int count = 0;
+        for (int offset = from; offset < to; offset += BLOCK) {
+            block.load(offset, to);
+            long inside = prefixXor(block.quotes) ^ carry;
+            carry = inside >> 63;
+            count += Long.bitCount(block.newlines & ~inside);
+        }
+        return count;
+    }
+}
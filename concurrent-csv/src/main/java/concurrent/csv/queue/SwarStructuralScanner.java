@@ -0,0 +1,51 @@
+package concurrent.csv.queue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Portable scanner comparing eight bytes at a time inside a {@code long} (SIMD within a register).
+ */
+final class SwarStructuralScanner extends StructuralScanner {
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+    private static final long QUOTE = '"' * ONES;
+    private static final long COMMA = ',' * ONES;
+    private static final long LF = '\n' * ONES;
+    private static final long CR = '\r' * ONES;
+
+    @Override
+    BlockReader reader(ByteBuffer buffer) {
+        ByteBuffer littleEndian = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        return new BlockReader(buffer) {
+            @Override
+            void load(int offset) {
+                long q = 0, d = 0, n = 0, r = 0;
+                for (int k = 0; k < 8; k++) {
+                    long word = littleEndian.getLong(offset + (k << 3));
+                    int shift = k << 3;
+                    q |= matches(word, QUOTE) << shift;
+                    d |= matches(word, COMMA) << shift;
+                    n |= matches(word, LF) << shift;
+                    r |= matches(word, CR) << shift;
+                }
+                quotes = q;
+                delimiters = d;
+                newlines = n;
+                returns = r;
+            }
+        };
+    }
+
+    /**
+     * One bit per byte of {@code word} that equals the broadcast byte in {@code pattern}.
+     */
+    static long matches(long word, long pattern) {
+        long x = word ^ pattern;
+        // high bit of every byte set exactly when that byte of x is zero, no carries between bytes
+        long zero = ~(((x & LOW7) + LOW7) | x | LOW7);
+        // gather the eight high bits into the lowest byte
+        return ((zero >>> 7) * 0x0102040810204080L) >>> 56;
+    }
+}
@@ -0,0 +1,42 @@
+package concurrent.csv.queue;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Scanner using the incubating Vector API, 16 to 64 bytes per comparison depending on the hardware.
+ */
+final class VectorStructuralScanner extends StructuralScanner {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED.length() <= BLOCK
+            ? ByteVector.SPECIES_PREFERRED
+            : ByteVector.SPECIES_512;
+    private static final int LANES = SPECIES.length();
+
+    @Override
+    BlockReader reader(ByteBuffer buffer) {
+        // segment over the whole buffer so block offsets are absolute buffer indices
+        MemorySegment segment = MemorySegment.ofBuffer(buffer.duplicate().clear());
+        return new BlockReader(buffer) {
+            @Override
+            void load(int offset) {
+                long q = 0, d = 0, n = 0, r = 0;
+                for (int lane = 0; lane < BLOCK; lane += LANES) {
+                    ByteVector v = ByteVector.fromMemorySegment(SPECIES, segment, offset + lane, ByteOrder.nativeOrder());
+                    q |= v.eq((byte) '"').toLong() << lane;
+                    d |= v.eq((byte) ',').toLong() << lane;
+                    n |= v.eq((byte) '\n').toLong() << lane;
+                    r |= v.eq((byte) '\r').toLong() << lane;
+                }
+                quotes = q;
+                delimiters = d;
+                newlines = n;
+                returns = r;
+            }
+        };
+    }
+}
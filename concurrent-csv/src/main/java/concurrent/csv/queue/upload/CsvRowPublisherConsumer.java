@@ -1,6 +1,7 @@
 package concurrent.csv.queue.upload;
 
 import concurrent.csv.queue.ChunkedFileProcessor;
+import concurrent.csv.queue.ColumnarRows;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
@@ -20,14 +21,14 @@ public class CsvRowPublisherConsumer implements ChunkedFileProcessor.CsvLineCons
             return;
         }
 
-        for (ChunkedFileProcessor.Row row : result.rows()) {
+        ColumnarRows rows = result.rows();
+        for (int row = 0; row < rows.rowCount(); row++) {
             // Example: Convert Row to CSV line (basic implementation)
             StringBuilder sb = new StringBuilder();
-            for (int i = 0; i < row.getFieldCount(); i++) {
-                ChunkedFileProcessor.Field field = row.getFields()[i];
-                // Real logic: slice from CharBuffer for perf, here we simulate with placeholder
+            for (int i = 0; i < rows.fieldCount(row); i++) {
+                // Real logic: slice the field bytes via result.bytes(row, i), here we simulate with placeholder
                 sb.append("value").append(i);
-                if (i < row.getFieldCount() - 1) sb.append(",");
+                if (i < rows.fieldCount(row) - 1) sb.append(",");
             }
             sb.append("\n");
             ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
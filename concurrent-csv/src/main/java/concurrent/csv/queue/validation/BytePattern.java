@@ -0,0 +1,515 @@
+package concurrent.csv.queue.validation;
+
+import concurrent.csv.queue.ByteSlice;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * A schema {@code pattern} compiled into a table driven DFA that matches the field bytes directly, one table lookup per
+ * byte without backtracking or a {@link java.util.regex.Matcher} per call. Like {@link java.util.regex.Matcher#matches}
+ * the whole field has to match.
+ * <p>
+ * Supported is the subset schema patterns are written in: ASCII literals and escapes, {@code .}, character classes
+ * with ranges and negation, {@code \d \w \s} and their negations, groups, alternation, the greedy and lazy quantifiers
+ * {@code * + ? {n} {n,} {n,m}} and anchors at the start and end. Anything else (flags, backreferences, lookaround,
+ * Unicode classes) and automata beyond {@value #MAX_STATES} states fall back to {@link Pattern}. So do fields with
+ * non-ASCII bytes when the pattern could match them; patterns that can not reject such fields on their first
+ * non-ASCII byte.
+ */
+final class BytePattern {
+
+    private static final int MAX_STATES = 1024;
+    private static final int MAX_NFA_STATES = 16_384;
+    private static final int ALPHABET = 128;
+    private static final int NON_ASCII = ALPHABET; // symbol standing for every non-ASCII character
+    private static final int DEAD = -1;
+
+    private final Pattern pattern;
+    // next state per state and ASCII byte, state << 7 | byte
+    private final int[] transitions;
+    private final boolean[] accepting;
+    private final boolean matchesNonAscii;
+
+    private BytePattern(Pattern pattern, int[] transitions, boolean[] accepting, boolean matchesNonAscii) {
+        this.pattern = pattern;
+        this.transitions = transitions;
+        this.accepting = accepting;
+        this.matchesNonAscii = matchesNonAscii;
+    }
+
+    static BytePattern compile(String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        try {
+            Nfa nfa = new Nfa();
+            Parser parser = new Parser(regex);
+            Node node = parser.parse();
+            int[] fragment = nfa.build(node);
+            nfa.accept = fragment[1];
+            return determinize(pattern, nfa);
+        } catch (UnsupportedPatternException e) {
+            return new BytePattern(pattern, null, null, true);
+        }
+    }
+
+    /**
+     * Whether the DFA is used, {@code false} when every field goes to {@link Pattern}.
+     */
+    boolean isCompiled() {
+        return transitions != null;
+    }
+
+    boolean matches(ByteSlice value) {
+        if (transitions == null) {
+            return pattern.matcher(value).matches();
+        }
+        ByteBuffer buffer = value.getBuffer();
+        int[] transitions = this.transitions;
+        int state = 0;
+        for (int i = value.getStart(), end = value.getEnd(); i < end; i++) {
+            byte b = buffer.get(i);
+            if (b < 0) {
+                return matchesNonAscii && pattern.matcher(value).matches();
+            }
+            state = transitions[state << 7 | b];
+            if (state == DEAD) {
+                return false;
+            }
+        }
+        return accepting[state];
+    }
+
+    /**
+     * Subset construction over the NFA, states are numbered in discovery order with 0 as the start.
+     */
+    private static BytePattern determinize(Pattern pattern, Nfa nfa) {
+        Map<BitSet, Integer> states = new HashMap<>();
+        List<BitSet> sets = new ArrayList<>();
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+        BitSet start = nfa.closure(bits(nfa.start));
+        states.put(start, 0);
+        sets.add(start);
+        pending.add(0);
+
+        int[] transitions = new int[MAX_STATES * ALPHABET];
+        boolean matchesNonAscii = false;
+        while (!pending.isEmpty()) {
+            int state = pending.poll();
+            BitSet set = sets.get(state);
+            matchesNonAscii |= !nfa.step(set, NON_ASCII).isEmpty();
+            for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                BitSet next = nfa.step(set, symbol);
+                if (next.isEmpty()) {
+                    transitions[state << 7 | symbol] = DEAD;
+                    continue;
+                }
+                Integer target = states.get(next);
+                if (target == null) {
+                    if (sets.size() == MAX_STATES) {
+                        throw new UnsupportedPatternException();
+                    }
+                    target = sets.size();
+                    states.put(next, target);
+                    sets.add(next);
+                    pending.add(target);
+                }
+                transitions[state << 7 | symbol] = target;
+            }
+        }
+
+        boolean[] accepting = new boolean[sets.size()];
+        for (int state = 0; state < sets.size(); state++) {
+            accepting[state] = sets.get(state).get(nfa.accept);
+        }
+        int[] table = new int[sets.size() * ALPHABET];
+        System.arraycopy(transitions, 0, table, 0, table.length);
+        return new BytePattern(pattern, table, accepting, matchesNonAscii);
+    }
+
+    private static BitSet bits(int bit) {
+        BitSet bits = new BitSet();
+        bits.set(bit);
+        return bits;
+    }
+
+    private static final class UnsupportedPatternException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedPatternException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private sealed interface Node permits Chars, Concat, Alternation, Repeat {}
+
+    /**
+     * One character out of {@code set}, indexed by ASCII code plus {@link #NON_ASCII}.
+     */
+    private record Chars(BitSet set) implements Node {}
+
+    private record Concat(List<Node> nodes) implements Node {}
+
+    private record Alternation(List<Node> nodes) implements Node {}
+
+    /**
+     * {@code max} is {@code -1} when unbounded.
+     */
+    private record Repeat(Node node, int min, int max) implements Node {}
+
+    /**
+     * Recursive descent over the supported syntax, throwing {@link UnsupportedPatternException} for the rest.
+     */
+    private static final class Parser {
+
+        private final String regex;
+        private int position;
+
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        Node parse() {
+            if (peek('^')) position++;
+            Node node = alternation();
+            if (peek('$')) position++;
+            if (position != regex.length()) {
+                throw new UnsupportedPatternException();
+            }
+            return node;
+        }
+
+        private boolean peek(char c) {
+            return position < regex.length() && regex.charAt(position) == c;
+        }
+
+        private char next() {
+            if (position == regex.length()) {
+                throw new UnsupportedPatternException();
+            }
+            return regex.charAt(position++);
+        }
+
+        private Node alternation() {
+            List<Node> alternatives = new ArrayList<>();
+            alternatives.add(concatenation());
+            while (peek('|')) {
+                position++;
+                alternatives.add(concatenation());
+            }
+            return alternatives.size() == 1 ? alternatives.get(0) : new Alternation(alternatives);
+        }
+
+        private Node concatenation() {
+            List<Node> nodes = new ArrayList<>();
+            while (position < regex.length() && !peek('|') && !peek(')')) {
+                // a $ only anchors at the very end, which parse() consumes
+                if (peek('$') && position == regex.length() - 1) {
+                    break;
+                }
+                nodes.add(quantified(atom()));
+            }
+            return new Concat(nodes);
+        }
+
+        private Node quantified(Node atom) {
+            Node node = atom;
+            while (position < regex.length()) {
+                char c = regex.charAt(position);
+                int min;
+                int max;
+                if (c == '*') {
+                    min = 0;
+                    max = -1;
+                    position++;
+                } else if (c == '+') {
+                    min = 1;
+                    max = -1;
+                    position++;
+                } else if (c == '?') {
+                    min = 0;
+                    max = 1;
+                    position++;
+                } else if (c == '{') {
+                    position++;
+                    min = number();
+                    max = min;
+                    if (peek(',')) {
+                        position++;
+                        max = peek('}') ? -1 : number();
+                    }
+                    if (next() != '}' || (max != -1 && max < min)) {
+                        throw new UnsupportedPatternException();
+                    }
+                } else {
+                    return node;
+                }
+                if (peek('?')) {
+                    // lazy, the same language under a whole-field match
+                    position++;
+                } else if (peek('+')) {
+                    // possessive quantifiers can reject what the automaton accepts
+                    throw new UnsupportedPatternException();
+                }
+                node = new Repeat(node, min, max);
+            }
+            return node;
+        }
+
+        private int number() {
+            int start = position;
+            while (position < regex.length() && Character.isDigit(regex.charAt(position)) && position - start < 4) {
+                position++;
+            }
+            if (start == position) {
+                throw new UnsupportedPatternException();
+            }
+            return Integer.parseInt(regex, start, position, 10);
+        }
+
+        private Node atom() {
+            char c = next();
+            return switch (c) {
+                case '(' -> {
+                    if (peek('?')) {
+                        position++;
+                        if (next() != ':') {
+                            throw new UnsupportedPatternException();
+                        }
+                    }
+                    Node group = alternation();
+                    if (next() != ')') {
+                        throw new UnsupportedPatternException();
+                    }
+                    yield group;
+                }
+                case '[' -> new Chars(characterClass());
+                case '.' -> {
+                    // like Pattern without DOTALL: anything but line terminators
+                    BitSet set = new BitSet();
+                    set.set(0, ALPHABET + 1);
+                    set.clear('\n');
+                    set.clear('\r');
+                    yield new Chars(set);
+                }
+                case '\\' -> new Chars(escape());
+                case '^', '$', '*', '+', '?', '{', ')' -> throw new UnsupportedPatternException();
+                default -> new Chars(literal(c));
+            };
+        }
+
+        private BitSet characterClass() {
+            BitSet set = new BitSet();
+            boolean negated = peek('^');
+            if (negated) position++;
+            boolean first = true;
+            while (true) {
+                char c = next();
+                if (c == ']' && !first) {
+                    break;
+                }
+                first = false;
+                if (c == '[' || c == ']' || (c == '&' && peek('&'))) {
+                    throw new UnsupportedPatternException();
+                }
+                BitSet from = c == '\\' ? escape() : literal(c);
+                if (peek('-') && position + 1 < regex.length() && regex.charAt(position + 1) != ']') {
+                    position++;
+                    char to = next();
+                    if (to == '[' || from.cardinality() != 1) {
+                        throw new UnsupportedPatternException();
+                    }
+                    BitSet upper = to == '\\' ? escape() : literal(to);
+                    int low = from.nextSetBit(0);
+                    int high = upper.nextSetBit(0);
+                    if (upper.cardinality() != 1 || high < low) {
+                        throw new UnsupportedPatternException();
+                    }
+                    set.set(low, high + 1);
+                } else {
+                    set.or(from);
+                }
+            }
+            if (negated) {
+                set.flip(0, ALPHABET + 1);
+            }
+            return set;
+        }
+
+        private BitSet escape() {
+            char c = next();
+            BitSet set = new BitSet();
+            switch (c) {
+                case 'd', 'D' -> set.set('0', '9' + 1);
+                case 'w', 'W' -> {
+                    set.set('a', 'z' + 1);
+                    set.set('A', 'Z' + 1);
+                    set.set('0', '9' + 1);
+                    set.set('_');
+                }
+                case 's', 'S' -> {
+                    set.set(' ');
+                    set.set('\t', '\r' + 1);
+                }
+                case 't' -> set.set('\t');
+                case 'n' -> set.set('\n');
+                case 'r' -> set.set('\r');
+                case 'f' -> set.set('\f');
+                default -> {
+                    // escaped punctuation stands for itself, letters and digits have other meanings
+                    if (c >= ALPHABET || Character.isLetterOrDigit(c)) {
+                        throw new UnsupportedPatternException();
+                    }
+                    set.set(c);
+                }
+            }
+            if (c == 'D' || c == 'W' || c == 'S') {
+                set.flip(0, ALPHABET + 1);
+            }
+            return set;
+        }
+
+        private static BitSet literal(char c) {
+            if (c >= ALPHABET) {
+                throw new UnsupportedPatternException();
+            }
+            BitSet set = new BitSet();
+            set.set(c);
+            return set;
+        }
+    }
+
+    /**
+     * Thompson construction. Every state has either one character transition or epsilon transitions.
+     */
+    private static final class Nfa {
+
+        private final List<BitSet> sets = new ArrayList<>();
+        private final List<int[]> targets = new ArrayList<>();
+        private final int start = newState();
+        private int accept;
+
+        private int newState() {
+            if (sets.size() == MAX_NFA_STATES) {
+                throw new UnsupportedPatternException();
+            }
+            sets.add(null);
+            targets.add(new int[0]);
+            return sets.size() - 1;
+        }
+
+        private void epsilon(int from, int to) {
+            int[] old = targets.get(from);
+            int[] edges = Arrays.copyOf(old, old.length + 1);
+            edges[old.length] = to;
+            targets.set(from, edges);
+        }
+
+        /**
+         * Builds {@code node} from the start state on the first call, returns its entry and exit state.
+         */
+        int[] build(Node node) {
+            int[] fragment = fragment(node);
+            epsilon(start, fragment[0]);
+            return fragment;
+        }
+
+        private int[] fragment(Node node) {
+            return switch (node) {
+                case Chars chars -> {
+                    int in = newState();
+                    int out = newState();
+                    sets.set(in, chars.set());
+                    targets.set(in, new int[]{out});
+                    yield new int[]{in, out};
+                }
+                case Concat concat -> {
+                    int in = newState();
+                    int out = in;
+                    for (Node part : concat.nodes()) {
+                        int[] fragment = fragment(part);
+                        epsilon(out, fragment[0]);
+                        out = fragment[1];
+                    }
+                    yield new int[]{in, out};
+                }
+                case Alternation alternation -> {
+                    int in = newState();
+                    int out = newState();
+                    for (Node alternative : alternation.nodes()) {
+                        int[] fragment = fragment(alternative);
+                        epsilon(in, fragment[0]);
+                        epsilon(fragment[1], out);
+                    }
+                    yield new int[]{in, out};
+                }
+                case Repeat repeat -> {
+                    int in = newState();
+                    int out = in;
+                    for (int i = 0; i < repeat.min(); i++) {
+                        int[] fragment = fragment(repeat.node());
+                        epsilon(out, fragment[0]);
+                        out = fragment[1];
+                    }
+                    if (repeat.max() == -1) {
+                        int[] fragment = fragment(repeat.node());
+                        int exit = newState();
+                        epsilon(out, fragment[0]);
+                        epsilon(out, exit);
+                        epsilon(fragment[1], fragment[0]);
+                        epsilon(fragment[1], exit);
+                        out = exit;
+                    } else {
+                        int exit = newState();
+                        for (int i = repeat.min(); i < repeat.max(); i++) {
+                            int[] fragment = fragment(repeat.node());
+                            epsilon(out, exit);
+                            epsilon(out, fragment[0]);
+                            out = fragment[1];
+                        }
+                        epsilon(out, exit);
+                        out = exit;
+                    }
+                    yield new int[]{in, out};
+                }
+            };
+        }
+
+        BitSet closure(BitSet states) {
+            BitSet closure = (BitSet) states.clone();
+            ArrayDeque<Integer> pending = new ArrayDeque<>();
+            states.stream().forEach(pending::add);
+            while (!pending.isEmpty()) {
+                int state = pending.poll();
+                if (sets.get(state) != null) {
+                    continue;
+                }
+                for (int target : targets.get(state)) {
+                    if (!closure.get(target)) {
+                        closure.set(target);
+                        pending.add(target);
+                    }
+                }
+            }
+            return closure;
+        }
+
+        BitSet step(BitSet states, int symbol) {
+            BitSet next = new BitSet();
+            for (int state = states.nextSetBit(0); state >= 0; state = states.nextSetBit(state + 1)) {
+                BitSet set = sets.get(state);
+                if (set != null && set.get(symbol)) {
+                    next.set(targets.get(state)[0]);
+                }
+            }
+            return next.isEmpty() ? next : closure(next);
+        }
+    }
+}
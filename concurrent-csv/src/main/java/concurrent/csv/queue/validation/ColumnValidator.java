@@ -0,0 +1,345 @@
+package concurrent.csv.queue.validation;
+
+import concurrent.csv.queue.ByteSlice;
+import concurrent.csv.queue.EnumDictionary;
+import concurrent.csv.queue.FieldParsers;
+import concurrent.csv.queue.validation.schema.Property;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+/**
+ * Checks of one column, compiled once from its schema {@link Property}.
+ * <p>
+ * Every type has its own implementation holding exactly the constraints that apply, resolved up front: patterns are
+ * compiled into byte DFAs, enum values into a perfect hash and bounds into unscaled longs. Validating a field then only reads its
+ * bytes, without map lookups, string comparisons or allocations. Instances are immutable and shared by all workers.
+ */
+abstract class ColumnValidator {
+
+    private final boolean required;
+
+    ColumnValidator(boolean required) {
+        this.required = required;
+    }
+
+    /**
+     * Whether an empty or missing field fails with {@link ErrorCode#REQUIRED}.
+     */
+    final boolean isRequired() {
+        return required;
+    }
+
+    /**
+     * Validates the field bytes the slice points at, without surrounding quotes.
+     *
+     * @return the failed check, {@code null} when the value is valid
+     */
+    abstract ErrorCode validate(ByteSlice value);
+
+    /**
+     * Values of an enum column by ordinal, {@code null} for other columns.
+     */
+    EnumDictionary dictionary() {
+        return null;
+    }
+
+    static ColumnValidator compile(Property property, boolean required) {
+        String type = property.getType() != null ? property.getType() : "string";
+        String format = property.getFormat();
+        if ("boolean".equals(type)) {
+            return new BooleanColumn(required);
+        }
+        if ("number".equals(type) && "decimal".equals(format)) {
+            return new DecimalColumn(property, required);
+        }
+        if ("date-time".equals(format)) {
+            return new DateTimeColumn(required);
+        }
+        if ("string".equals(type)) {
+            return new StringColumn(property, required);
+        }
+        return new AnyColumn(required);
+    }
+
+    /**
+     * Columns without checks of their own, only {@code required} applies.
+     */
+    private static final class AnyColumn extends ColumnValidator {
+
+        AnyColumn(boolean required) {
+            super(required);
+        }
+
+        @Override
+        ErrorCode validate(ByteSlice value) {
+            return null;
+        }
+    }
+
+    private static final class StringColumn extends ColumnValidator {
+
+        private final int minLength;
+        private final int maxLength;
+        private final BytePattern pattern;
+        private final EnumDictionary values;
+
+        StringColumn(Property property, boolean required) {
+            super(required);
+            this.minLength = property.getMinLength() != null ? property.getMinLength() : 0;
+            this.maxLength = property.getMaxLength() != null ? property.getMaxLength() : Integer.MAX_VALUE;
+            this.pattern = property.getPattern() != null ? BytePattern.compile(property.getPattern()) : null;
+            this.values = property.getEnum() != null && !property.getEnum().isEmpty()
+                    ? new EnumDictionary(property.getEnum()) : null;
+        }
+
+        @Override
+        ErrorCode validate(ByteSlice value) {
+            // lengths count characters, only fields close to a limit need the decoded length
+            int bytes = value.byteLength();
+            if (bytes < minLength || bytes > maxLength) {
+                int length = value.length();
+                if (length < minLength) {
+                    return ErrorCode.MIN_LENGTH;
+                }
+                if (length > maxLength) {
+                    return ErrorCode.MAX_LENGTH;
+                }
+            }
+            if (pattern != null && !pattern.matches(value)) {
+                return ErrorCode.PATTERN;
+            }
+            if (values != null && values.ordinal(value) < 0) {
+                return ErrorCode.ENUM;
+            }
+            return null;
+        }
+
+        @Override
+        EnumDictionary dictionary() {
+            return values;
+        }
+    }
+
+    /**
+     * {@code true} or {@code false} in any ASCII case, decided by the length and one case-folded comparison.
+     */
+    private static final class BooleanColumn extends ColumnValidator {
+
+        // the literals as little endian ASCII, 0x20 sets every letter to lower case
+        private static final int TRUE = 't' | 'r' << 8 | 'u' << 16 | 'e' << 24;
+        private static final int FALS = 'f' | 'a' << 8 | 'l' << 16 | 's' << 24;
+
+        BooleanColumn(boolean required) {
+            super(required);
+        }
+
+        @Override
+        ErrorCode validate(ByteSlice value) {
+            ByteBuffer buffer = value.getBuffer();
+            int start = value.getStart();
+            int length = value.byteLength();
+            if (length == 4) {
+                return lowerCase(buffer, start) == TRUE ? null : ErrorCode.BOOLEAN;
+            }
+            if (length == 5) {
+                return lowerCase(buffer, start) == FALS && (buffer.get(start + 4) | 0x20) == 'e' ? null : ErrorCode.BOOLEAN;
+            }
+            return ErrorCode.BOOLEAN;
+        }
+
+        // case folding is safe here: no other byte folds onto the letters of the literals
+        private static int lowerCase(ByteBuffer buffer, int start) {
+            return ((buffer.get(start) & 0xff) | (buffer.get(start + 1) & 0xff) << 8
+                    | (buffer.get(start + 2) & 0xff) << 16 | (buffer.get(start + 3) & 0xff) << 24) | 0x20202020;
+        }
+    }
+
+    /**
+     * Plain decimals such as {@code -1234.50}, checked by a state machine over the bytes that also counts significant
+     * digits for the {@code precision} and {@code scale} constraints: at most {@code precision - scale} integer and
+     * {@code scale} fraction digits, leading and trailing zeros not counted, as a SQL {@code DECIMAL(precision, scale)}
+     * column stores it. Without a scale {@code precision} limits all significant digits.
+     * <p>
+     * The same pass accumulates the value as an unscaled long at the largest scale of the two bounds, noting whether
+     * non-zero digits were cut off, so bounds are compared without parsing the field again. Only values out of the
+     * {@code long} range fall back to {@link BigDecimal}.
+     */
+    private static final class DecimalColumn extends ColumnValidator {
+
+        private static final int START = 0;
+        private static final int SIGN = 1;
+        private static final int INTEGER = 2;
+        private static final int LEADING_POINT = 3; // "." or "-.", a digit has to follow
+        private static final int POINT = 4;         // "1.", accepted like BigDecimal does
+        private static final int FRACTION = 5;
+        private static final int ERROR = 6;
+
+        private final int precision;
+        private final int scale;
+        private final BigDecimal minimum;
+        private final BigDecimal maximum;
+        private final int boundScale;
+        private final long unscaledMinimum;
+        private final long unscaledMaximum;
+
+        DecimalColumn(Property property, boolean required) {
+            super(required);
+            this.precision = property.getPrecision() != null ? property.getPrecision() : Integer.MAX_VALUE;
+            this.scale = property.getScale() != null ? property.getScale() : -1;
+            this.minimum = property.getMinimum();
+            this.maximum = property.getMaximum();
+            int boundScale = 0;
+            if (minimum != null) boundScale = Math.max(boundScale, minimum.scale());
+            if (maximum != null) boundScale = Math.max(boundScale, maximum.scale());
+            this.boundScale = boundScale;
+            this.unscaledMinimum = unscaled(minimum, boundScale);
+            this.unscaledMaximum = unscaled(maximum, boundScale);
+        }
+
+        // bounds beyond the long range are clamped to +-Long.MAX_VALUE, which values that did not overflow never pass
+        private static long unscaled(BigDecimal bound, int scale) {
+            if (bound == null) {
+                return 0;
+            }
+            try {
+                return bound.setScale(scale).unscaledValue().longValueExact();
+            } catch (ArithmeticException e) {
+                return bound.signum() < 0 ? -Long.MAX_VALUE : Long.MAX_VALUE;
+            }
+        }
+
+        @Override
+        ErrorCode validate(ByteSlice value) {
+            ByteBuffer buffer = value.getBuffer();
+            int start = value.getStart();
+            int end = value.getEnd();
+
+            int state = START;
+            boolean negative = false;
+            int integerDigits = 0;  // without leading zeros
+            int fractionDigits = 0; // up to the last non-zero digit
+            int fractionZeros = -1; // zeros between the point and the first non-zero digit
+            int position = 0;
+            // magnitude truncated to the bound scale, whether non-zero digits were cut off and whether it overflowed
+            long magnitude = 0;
+            boolean remainder = false;
+            boolean overflow = false;
+            for (int i = start; i < end && state != ERROR; i++) {
+                byte b = buffer.get(i);
+                int digit = b - '0';
+                boolean isDigit = digit >= 0 && digit <= 9;
+                switch (state) {
+                    case START, SIGN -> {
+                        if (isDigit) {
+                            state = INTEGER;
+                            if (digit != 0) integerDigits++;
+                            magnitude = digit;
+                        } else if (b == '.') {
+                            state = LEADING_POINT;
+                        } else if (state == START && (b == '-' || b == '+')) {
+                            state = SIGN;
+                            negative = b == '-';
+                        } else {
+                            state = ERROR;
+                        }
+                    }
+                    case INTEGER -> {
+                        if (isDigit) {
+                            if (integerDigits > 0 || digit != 0) integerDigits++;
+                            overflow |= magnitude > (Long.MAX_VALUE - digit) / 10;
+                            magnitude = magnitude * 10 + digit;
+                        } else {
+                            state = b == '.' ? POINT : ERROR;
+                        }
+                    }
+                    case LEADING_POINT, POINT, FRACTION -> {
+                        if (isDigit) {
+                            state = FRACTION;
+                            position++;
+                            if (digit != 0) {
+                                fractionDigits = position;
+                                if (fractionZeros < 0) fractionZeros = position - 1;
+                            }
+                            if (position <= boundScale) {
+                                overflow |= magnitude > (Long.MAX_VALUE - digit) / 10;
+                                magnitude = magnitude * 10 + digit;
+                            } else if (digit != 0) {
+                                remainder = true;
+                            }
+                        } else {
+                            state = ERROR;
+                        }
+                    }
+                    default -> throw new IllegalStateException();
+                }
+            }
+            if (state != INTEGER && state != POINT && state != FRACTION) {
+                return ErrorCode.DECIMAL;
+            }
+            if (scale >= 0) {
+                if (fractionDigits > scale) {
+                    return ErrorCode.SCALE;
+                }
+                if (precision != Integer.MAX_VALUE && integerDigits > precision - scale) {
+                    return ErrorCode.PRECISION;
+                }
+            } else if (precision != Integer.MAX_VALUE) {
+                int significant = integerDigits > 0 ? integerDigits + fractionDigits : fractionDigits - Math.max(fractionZeros, 0);
+                if (significant > precision) {
+                    return ErrorCode.PRECISION;
+                }
+            }
+
+            if (minimum == null && maximum == null) {
+                return null;
+            }
+            for (int i = position; i < boundScale; i++) {
+                overflow |= magnitude > Long.MAX_VALUE / 10;
+                magnitude *= 10;
+            }
+            if (overflow) {
+                return checkBounds(new BigDecimal(value.toString()));
+            }
+            // the value is +-(magnitude + a fraction of one unit when remainder is set)
+            if (minimum != null && (negative
+                    ? magnitude > -unscaledMinimum || (magnitude == -unscaledMinimum && remainder)
+                    : magnitude < unscaledMinimum)) {
+                return ErrorCode.MINIMUM;
+            }
+            if (maximum != null && (negative
+                    ? magnitude < -unscaledMaximum
+                    : magnitude > unscaledMaximum || (magnitude == unscaledMaximum && remainder))) {
+                return ErrorCode.MAXIMUM;
+            }
+            return null;
+        }
+
+        private ErrorCode checkBounds(BigDecimal decimal) {
+            if (minimum != null && decimal.compareTo(minimum) < 0) {
+                return ErrorCode.MINIMUM;
+            }
+            if (maximum != null && decimal.compareTo(maximum) > 0) {
+                return ErrorCode.MAXIMUM;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * {@code yyyy-MM-ddTHH:mm:ss[.S{1,9}][Z|+HH:MM|-HH:MM]} with real calendar ranges, through the same routine
+     * {@link concurrent.csv.queue.RowCursor#getEpochMillis} parses with, so every valid value can be read.
+     */
+    private static final class DateTimeColumn extends ColumnValidator {
+
+        DateTimeColumn(boolean required) {
+            super(required);
+        }
+
+        @Override
+        ErrorCode validate(ByteSlice value) {
+            long millis = FieldParsers.tryParseEpochMillis(value.getBuffer(), value.getStart(), value.getEnd());
+            return millis == FieldParsers.INVALID_DATE_TIME ? ErrorCode.DATE_TIME : null;
+        }
+    }
+}
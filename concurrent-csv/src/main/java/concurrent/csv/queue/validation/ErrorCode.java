@@ -0,0 +1,20 @@
+package concurrent.csv.queue.validation;
+
+/**
+ * Reason a field or row failed validation, written to the dead-letter file of a quarantining run.
+ */
+public enum ErrorCode {
+    REQUIRED,
+    MIN_LENGTH,
+    MAX_LENGTH,
+    PATTERN,
+    ENUM,
+    BOOLEAN,
+    DECIMAL,
+    PRECISION,
+    SCALE,
+    MINIMUM,
+    MAXIMUM,
+    DATE_TIME,
+    DUPLICATE_KEY
+}
@@ -1,33 +1,28 @@
 package concurrent.csv.queue.validation;
 
-import concurrent.csv.queue.ChunkedFileProcessor;
+import concurrent.csv.queue.ByteSlice;
+import concurrent.csv.queue.ChunkedFileProcessor.ChunkResult;
+import concurrent.csv.queue.ColumnarRows;
+import concurrent.csv.queue.EnumDictionary;
 import concurrent.csv.queue.validation.schema.OpenApiSpec;
 import concurrent.csv.queue.validation.schema.Property;
+import concurrent.csv.queue.validation.schema.Schema;
 
-import java.math.BigDecimal;
-import java.nio.CharBuffer;
-import java.text.ParsePosition;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Pattern;
 
+/**
+ * Validates rows against the {@code Transaction} schema of an {@link OpenApiSpec}.
+ * <p>
+ * The schema is compiled once into one {@link ColumnValidator} per column, indexed by column, so validating a row is a
+ * plain loop over the fields with no map lookups, boxing or type dispatch. The validators are immutable, a single
+ * instance is safely shared by all workers.
+ */
 public class RowValidator {
 
-    private static final Pattern FLEXIBLE_ISO_DATETIME_PATTERN = Pattern.compile(
-            "^\\d{4}-\\d{2}-\\d{2}T" +                   // Date: YYYY-MM-DDT
-                    "\\d{2}:\\d{2}:\\d{2}" +                     // Time: HH:mm:ss
-                    "(\\.\\d{1,9})?" +                           // Optional .fractional seconds
-                    "(Z|[+-]\\d{2}:\\d{2})?$"                    // Optional zone offset
-    );
-
-    private static final Map<String, Pattern> PRECOMPILED_PATTERNS = new HashMap<>();
-
-
-    private final Map<Integer, Property> propertyByIndex;
+    private final ColumnValidator[] columns;
 
     // Assuming the OpenApiSpec object is passed in for schema validation
     private final OpenApiSpec openApiSpec;
@@ -35,97 +30,102 @@ public class RowValidator {
     public RowValidator(OpenApiSpec openApiSpec) {
         this.openApiSpec = openApiSpec;
 
-        this.propertyByIndex = new HashMap<>();
-
-        for (Map.Entry<String, Property> entry : openApiSpec.getComponents().getSchemas().get("Transaction").getProperties().entrySet()) {
+        Schema schema = openApiSpec.getComponents().getSchemas().get("Transaction");
+        int columnCount = 0;
+        for (Property property : schema.getProperties().values()) {
+            if (property.getIndex() != null) {
+                columnCount = Math.max(columnCount, property.getIndex() + 1);
+            }
+        }
+        this.columns = new ColumnValidator[columnCount];
+        for (Map.Entry<String, Property> entry : schema.getProperties().entrySet()) {
             Property property = entry.getValue();
-            propertyByIndex.put(property.getIndex(), property);
+            if (property.getIndex() != null) {
+                boolean required = schema.getRequired() != null && schema.getRequired().contains(entry.getKey());
+                columns[property.getIndex()] = ColumnValidator.compile(property, required);
+            }
         }
-
     }
 
-    public ValidationResult validate(ChunkedFileProcessor.Row row, CharBuffer charBuffer) {
-
-
-        List<String> errors = new ArrayList<>();
-
-        // Iterate over fields and validate based on index
-        for (int i = 0; i < row.getFields().length; i++) {
-            ChunkedFileProcessor.Field field = row.getFields()[i];
-
-            // Extract the CharSequence (no String allocation here)
-            CharSequence value = extractFieldValue(row, field, charBuffer);
-
-            // Validate the value based on schema properties
-            Property property = propertyByIndex.get(i);
+    /**
+     * Column index of a schema property.
+     */
+    public int columnIndex(String propertyName) {
+        Property property = openApiSpec.getComponents().getSchemas().get("Transaction").getProperties().get(propertyName);
+        if (property == null || property.getIndex() == null) {
+            throw new IllegalArgumentException("Unknown column " + propertyName);
+        }
+        return property.getIndex();
+    }
 
-            // Perform validation on each property
-            if (!validateField(value, property)) {
+    /**
+     * Values of an enum column numbered in schema order, for {@link concurrent.csv.queue.RowCursor#getEnumOrdinal}.
+     *
+     * @throws IllegalArgumentException when the column is unknown or has no enum
+     */
+    public EnumDictionary enumDictionary(String propertyName) {
+        int index = columnIndex(propertyName);
+        EnumDictionary dictionary = columns[index] != null ? columns[index].dictionary() : null;
+        if (dictionary == null) {
+            throw new IllegalArgumentException("No enum on column " + propertyName);
+        }
+        return dictionary;
+    }
 
-                errors.add("Invalid value for field at index " + i + ": " + value);
-                System.out.println("Invalid value for field at index " + i + ": " + value);
-            }
+    /**
+     * Validates every row of a chunk, reusing a single {@link ByteSlice} for all fields. Errors name the file line
+     * of the offending row.
+     */
+    public void validate(ChunkResult result) {
+        ByteSlice value = new ByteSlice();
+        for (int row = 0; row < result.rows().rowCount(); row++) {
+            validate(result, row, value);
         }
+    }
 
-        return new ValidationResult(errors);
+    public ValidationResult validate(ChunkResult result, int row) {
+        return validate(result, row, new ByteSlice());
     }
 
+    private ValidationResult validate(ChunkResult result, int row, ByteSlice value) {
+        ColumnarRows rows = result.rows();
+        ByteBuffer buffer = result.buffer();
+        List<ValidationResult.FieldError> errors = null;
+        int fieldCount = rows.fieldCount(row);
 
-    private boolean validateField(CharSequence value, Property property) {
-        // Validate based on the type
-        if (property.getType().equals("string")) {
-            if (property.getMaxLength() != null && value.length() > property.getMaxLength()) {
-                return false;
+        for (int i = 0; i < columns.length; i++) {
+            ColumnValidator column = columns[i];
+            if (column == null || !rows.isProjected(i)) {
+                continue;
             }
-            if (property.getPattern() != null) {
-                Pattern pattern = PRECOMPILED_PATTERNS.computeIfAbsent(property.getPattern(), Pattern::compile);
-                if (!pattern.matcher(value).matches()) {
-                    return false;
+
+            ErrorCode code;
+            int start = i < fieldCount ? rows.fieldStart(row, i) : -1;
+            if (start < 0) {
+                // missing trailing field
+                code = column.isRequired() ? ErrorCode.REQUIRED : null;
+            } else {
+                int end = rows.fieldEnd(row, i);
+                if (end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"') {
+                    start++;
+                    end--;
                 }
+                // Point the reusable slice at the field bytes (nothing is decoded here)
+                value.wrap(buffer, start, end);
+                code = start == end && column.isRequired() ? ErrorCode.REQUIRED : column.validate(value);
             }
-            if (property.getEnum() != null && !property.getEnum().isEmpty() && !property.getEnum().contains(value.toString())) {
-                return false;
-            }
-        } else if (property.getType().equals("boolean")) {
-            if (!"true".equalsIgnoreCase(value.toString()) && !"false".equalsIgnoreCase(value.toString())) {
-                return false;
-            }
-        } else if (property.getType().equals("number") && property.getFormat().equals("decimal")) {
-            try {
-                new BigDecimal(value.toString());  // Decimal parsing
-            } catch (NumberFormatException e) {
-                return false;
+
+            if (code != null) {
+                if (errors == null) {
+                    errors = new ArrayList<>();
+                }
+                String error = "Invalid value for field at index " + i + " on line " + result.lineNumber(row) + ": "
+                        + (start < 0 ? "<missing>" : value);
+                errors.add(new ValidationResult.FieldError(i, code, error));
+                System.out.println(error);
             }
         }
-        else
-        if (property.getFormat() != null && property.getFormat().equals("date-time")) {
-
-
-            return FLEXIBLE_ISO_DATETIME_PATTERN.matcher(value).matches();
-
-//             try {
-////                DateTimeFormatter.ISO_DATE_TIME.parse(value);
-//
-//
-//                DateTimeFormatter.ISO_DATE_TIME.parseUnresolved(value, new ParsePosition(0));
-//
-//                ISO_LOCAL_DATETIME_PATTERN
-//
-//
-//            } catch (DateTimeParseException e) {
-//                return false;
-//            }
-        }
 
-        return true;
-    }
-
-    // This method extracts a CharSequence directly from CharBuffer without creating a String
-    private CharSequence extractFieldValue(ChunkedFileProcessor.Row row, ChunkedFileProcessor.Field field, CharBuffer buffer) {
-        int start = field.getStart();
-        int end = field.getEnd();
-        return buffer.subSequence(start, end);
+        return errors == null ? ValidationResult.VALID : new ValidationResult(errors);
     }
 }
-
-
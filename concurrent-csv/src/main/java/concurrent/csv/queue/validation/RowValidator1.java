@@ -1,12 +1,11 @@
 package concurrent.csv.queue.validation;
 
 import concurrent.csv.queue.ChunkedFileProcessor;
+import concurrent.csv.queue.ColumnarRows;
 import concurrent.csv.queue.validation.schema.OpenApiSpec;
 import concurrent.csv.queue.validation.schema.Property;
 import concurrent.csv.queue.validation.schema.Schema;
 
-import java.nio.CharBuffer;
-import java.util.List;
 import java.util.Map;
 
 public class RowValidator1 {
@@ -22,20 +21,18 @@ public class RowValidator1 {
     }
 
     public void validate(ChunkedFileProcessor.ChunkResult result) throws ValidationException {
-        List<ChunkedFileProcessor.Row> rows = result.rows();
-        CharBuffer charBuffer = result.charBuffer();
+        ColumnarRows rows = result.rows();
 
-        for (ChunkedFileProcessor.Row row : rows) {
+        for (int row = 0; row < rows.rowCount(); row++) {
             for (Property property : propertiesByName.values()) {
                 Integer index = property.getIndex();
                 if (index == null) continue; // no index defined, skip
 
-                if (index >= row.getFields().length) {
+                if (index >= rows.fieldCount(row)) {
                     throw new ValidationException("Missing field at index " + index + " for property " + property);
                 }
 
-                ChunkedFileProcessor.Field field = row.getFields()[index];
-                if (field == null) {
+                if (rows.fieldStart(row, index) < 0) {
                     throw new ValidationException("Null field at index " + index + " for property " + property);
                 }
 
@@ -0,0 +1,307 @@
+package concurrent.csv.queue.validation;
+
+import concurrent.csv.queue.ByteSlice;
+import concurrent.csv.queue.ChunkedFileProcessor.ChunkResult;
+import concurrent.csv.queue.ColumnarRows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * Detects rows of a file sharing the same key across all chunks, for combinations such as
+ * {@code transaction_id} and {@code reported_payee_id} that have to be unique.
+ * <p>
+ * Keys are not kept on the heap. Every distinct key occupies one fixed {@value #SLOT_BYTES} byte slot of an off-heap
+ * open addressing table: its 64-bit hash, the file offset of its row and the row's line number. Rows with equal
+ * hashes are verified by reading the earlier row back from the file and comparing the key fields byte by byte, so a
+ * hash collision is never reported as a duplicate. The table is split into {@value #STRIPES} independently locked
+ * stripes selected by the hash, workers of different chunks rarely contend. {@link #close()} frees the table.
+ * <p>
+ * Chunks are checked concurrently, which one of two rows sharing a key is seen first is undefined. Duplicates are
+ * therefore reported with both line numbers, the lower one first.
+ */
+public class UniqueKeyValidator implements AutoCloseable {
+
+    static final int SLOT_BYTES = 3 * Long.BYTES;
+    private static final int STRIPES = 64;
+    private static final int INITIAL_SLOTS = 1024;
+    private static final long EMPTY = 0;
+
+    private final FileChannel channel;
+    private final int[] keyColumns;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicLong duplicates = new AtomicLong();
+
+    public UniqueKeyValidator(Path file, int... keyColumns) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.keyColumns = keyColumns;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public long duplicates() {
+        return duplicates.get();
+    }
+
+    /**
+     * Distinct keys recorded so far. Stripes double once they are 3/4 full.
+     */
+    public long keyCount() {
+        long keys = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                keys += stripe.size;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Records the keys of all rows of a chunk, the rows whose key was seen before are returned as errors. Row 0, the
+     * header, has no key.
+     */
+    public ValidationResult validate(ChunkResult result) {
+        ValidationResult duplicates = ValidationResult.VALID;
+        for (int row = 0; row < result.rows().rowCount(); row++) {
+            if (result.rowNumber(row) != 0) {
+                duplicates = duplicates.and(validate(result, row));
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * Records the key of one row, invalid when an earlier row had the same key.
+     */
+    public ValidationResult validate(ChunkResult result, int row) {
+        ColumnarRows rows = result.rows();
+        ByteBuffer buffer = result.buffer();
+        long hash = hash(rows, buffer, row);
+        long line = result.lineNumber(row);
+        long seen = stripes[(int) (hash >>> 58)].insert(hash, result.rowOffset(row), line, rows, buffer, row);
+        if (seen < 0) {
+            return ValidationResult.VALID;
+        }
+        duplicates.incrementAndGet();
+        String error = "Duplicate key " + key(rows, buffer, row) + " on lines " + Math.min(seen, line)
+                + " and " + Math.max(seen, line);
+        return new ValidationResult(List.of(new ValidationResult.FieldError(-1, ErrorCode.DUPLICATE_KEY, error)));
+    }
+
+    /**
+     * Closes the file and frees the off-heap table, keys can no longer be recorded afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        for (Stripe stripe : stripes) {
+            stripe.free();
+        }
+        channel.close();
+    }
+
+    private long hash(ColumnarRows rows, ByteBuffer buffer, int row) {
+        long hash = 0xcbf29ce484222325L;
+        for (int column : keyColumns) {
+            int start = start(rows, buffer, row, column);
+            int end = end(rows, buffer, row, column);
+            for (int i = start; i < end; i++) {
+                hash = (hash ^ buffer.get(i)) * 0x100000001b3L;
+            }
+            // field separator, keys ("ab", "c") and ("a", "bc") differ
+            hash = (hash ^ 0xff) * 0x100000001b3L;
+        }
+        // murmur3 finalizer, spreads the bits the stripe and slot are taken from
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    private String key(ColumnarRows rows, ByteBuffer buffer, int row) {
+        List<String> key = new ArrayList<>(keyColumns.length);
+        for (int column : keyColumns) {
+            key.add(ByteSlice.decode(buffer, start(rows, buffer, row, column), end(rows, buffer, row, column)));
+        }
+        return key.toString();
+    }
+
+    // field bounds without surrounding quotes, missing fields are empty
+    private static int start(ColumnarRows rows, ByteBuffer buffer, int row, int column) {
+        int start = rows.fieldStart(row, column);
+        if (start < 0) {
+            return 0;
+        }
+        return isQuoted(buffer, start, rows.fieldEnd(row, column)) ? start + 1 : start;
+    }
+
+    private static int end(ColumnarRows rows, ByteBuffer buffer, int row, int column) {
+        int start = rows.fieldStart(row, column);
+        if (start < 0) {
+            return 0;
+        }
+        int end = rows.fieldEnd(row, column);
+        return isQuoted(buffer, start, end) ? end - 1 : end;
+    }
+
+    private static boolean isQuoted(ByteBuffer buffer, int start, int end) {
+        return end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"';
+    }
+
+    /**
+     * Compares the key of {@code row} with the key of the row starting at {@code offset} in the file.
+     */
+    private boolean sameKey(long offset, ColumnarRows rows, ByteBuffer buffer, int row) {
+        ByteBuffer earlier = readRow(offset);
+        int[] bounds = new int[2];
+        for (int column : keyColumns) {
+            fieldBounds(earlier, column, bounds);
+            int start = start(rows, buffer, row, column);
+            int length = end(rows, buffer, row, column) - start;
+            if (bounds[1] - bounds[0] != length
+                    || earlier.slice(bounds[0], length).mismatch(buffer.slice(start, length)) != -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ByteBuffer readRow(long offset) {
+        ByteBuffer row = ByteBuffer.allocate(4096);
+        try {
+            boolean inQuotes = false;
+            int scanned = 0;
+            while (true) {
+                int read = channel.read(row, offset + row.position());
+                for (int i = scanned; i < row.position(); i++) {
+                    byte b = row.get(i);
+                    if (b == '"') inQuotes = !inQuotes;
+                    if ((b == '\n' || b == '\r') && !inQuotes) {
+                        return row.flip().limit(i);
+                    }
+                }
+                scanned = row.position();
+                if (read == -1) {
+                    return row.flip();
+                }
+                if (!row.hasRemaining()) {
+                    row = ByteBuffer.allocate(row.capacity() * 2).put(row.flip());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // start and end of a field of a single row, without surrounding quotes; empty past the last field
+    private static void fieldBounds(ByteBuffer row, int column, int[] bounds) {
+        int field = 0;
+        int start = 0;
+        boolean inQuotes = false;
+        for (int i = 0; i <= row.limit(); i++) {
+            byte b = i < row.limit() ? row.get(i) : (byte) ',';
+            if (b == '"') inQuotes = !inQuotes;
+            if (b == ',' && !inQuotes) {
+                if (field++ == column) {
+                    boolean quoted = isQuoted(row, start, i);
+                    bounds[0] = quoted ? start + 1 : start;
+                    bounds[1] = quoted ? i - 1 : i;
+                    return;
+                }
+                start = i + 1;
+            }
+        }
+        bounds[0] = bounds[1] = 0;
+    }
+
+    /**
+     * One lock guarded part of the table. Slots hold hash, row offset and line number; a zero hash marks a free slot.
+     * The slots live in an arena of their own, so a grown table frees the old one right away.
+     */
+    private final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private Arena arena = Arena.ofShared();
+        // zeroed on allocation, every slot starts out free
+        private MemorySegment slots = arena.allocate((long) INITIAL_SLOTS * SLOT_BYTES, Long.BYTES);
+        private int capacity = INITIAL_SLOTS;
+        private int size;
+
+        /**
+         * Inserts the key, returns the line of the row that has it already or {@code -1}.
+         */
+        long insert(long hash, long offset, long line, ColumnarRows rows, ByteBuffer buffer, int row) {
+            lock.lock();
+            try {
+                int mask = capacity - 1;
+                for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                    long position = (long) slot * SLOT_BYTES;
+                    long stored = slots.get(JAVA_LONG, position);
+                    if (stored == EMPTY) {
+                        slots.set(JAVA_LONG, position, hash);
+                        slots.set(JAVA_LONG, position + 8, offset);
+                        slots.set(JAVA_LONG, position + 16, line);
+                        if (++size * 4L > capacity * 3L) {
+                            grow();
+                        }
+                        return -1;
+                    }
+                    // the read back happens under the lock, only true duplicates and real collisions get here
+                    if (stored == hash && sameKey(slots.get(JAVA_LONG, position + 8), rows, buffer, row)) {
+                        return slots.get(JAVA_LONG, position + 16);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void grow() {
+            Arena oldArena = arena;
+            MemorySegment old = slots;
+            int oldCapacity = capacity;
+            capacity *= 2;
+            arena = Arena.ofShared();
+            slots = arena.allocate((long) capacity * SLOT_BYTES, Long.BYTES);
+            int mask = capacity - 1;
+            for (int i = 0; i < oldCapacity; i++) {
+                long hash = old.get(JAVA_LONG, (long) i * SLOT_BYTES);
+                if (hash == EMPTY) continue;
+                int slot = (int) hash & mask;
+                while (slots.get(JAVA_LONG, (long) slot * SLOT_BYTES) != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                MemorySegment.copy(old, (long) i * SLOT_BYTES, slots, (long) slot * SLOT_BYTES, SLOT_BYTES);
+            }
+            oldArena.close();
+        }
+
+        void free() {
+            lock.lock();
+            try {
+                if (arena.scope().isAlive()) {
+                    arena.close();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
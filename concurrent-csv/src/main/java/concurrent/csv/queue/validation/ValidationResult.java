@@ -1,19 +1,50 @@
 package concurrent.csv.queue.validation;
 
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ValidationResult {
-    private final List<String> errors;
+    public static final ValidationResult VALID = new ValidationResult(List.of());
 
-    public ValidationResult(List<String> errors) {
-        this.errors = errors;
+    /**
+     * One failed check, {@code column} is {@code -1} for checks of the whole row.
+     */
+    public record FieldError(int column, ErrorCode code, String message) {}
+
+    private final List<FieldError> fieldErrors;
+
+    public ValidationResult(List<FieldError> fieldErrors) {
+        this.fieldErrors = fieldErrors;
     }
 
     public boolean isValid() {
-        return errors.isEmpty();
+        return fieldErrors.isEmpty();
+    }
+
+    /**
+     * Errors of both results.
+     */
+    public ValidationResult and(ValidationResult other) {
+        if (other.isValid()) return this;
+        if (isValid()) return other;
+        return new ValidationResult(Stream.concat(fieldErrors.stream(), other.fieldErrors.stream()).toList());
     }
 
     public List<String> getErrors() {
-        return errors;
+        return fieldErrors.stream().map(FieldError::message).toList();
+    }
+
+    public List<FieldError> getFieldErrors() {
+        return fieldErrors;
+    }
+
+    /**
+     * Compact form of the errors such as {@code 6:DECIMAL;7:PATTERN}, row errors without the column.
+     */
+    public String getCodes() {
+        return fieldErrors.stream()
+                .map(error -> error.column() < 0 ? error.code().name() : error.column() + ":" + error.code())
+                .collect(Collectors.joining(";"));
     }
-}
\ No newline at end of file
+}
@@ -1,15 +1,22 @@
 package concurrent.csv.queue.validation.schema;
 
-import java.util.HashSet;
+import java.math.BigDecimal;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 public class Property {
     private String type;
     private String format;
     private Integer index;
+    private Integer minLength;
     private Integer maxLength;
+    private Integer precision;
+    private Integer scale;
+    private BigDecimal minimum;
+    private BigDecimal maximum;
     private String pattern;
-    private Set<String> _enum = new HashSet<>();
+    // ordered, the position of a value is its ordinal
+    private Set<String> _enum = new LinkedHashSet<>();
 
     // Getters and setters
     public String getType() {
@@ -36,6 +43,14 @@ public class Property {
         this.index = index;
     }
 
+    public Integer getMinLength() {
+        return minLength;
+    }
+
+    public void setMinLength(Integer minLength) {
+        this.minLength = minLength;
+    }
+
     public Integer getMaxLength() {
         return maxLength;
     }
@@ -44,6 +59,38 @@ public class Property {
         this.maxLength = maxLength;
     }
 
+    public Integer getPrecision() {
+        return precision;
+    }
+
+    public void setPrecision(Integer precision) {
+        this.precision = precision;
+    }
+
+    public Integer getScale() {
+        return scale;
+    }
+
+    public void setScale(Integer scale) {
+        this.scale = scale;
+    }
+
+    public BigDecimal getMinimum() {
+        return minimum;
+    }
+
+    public void setMinimum(BigDecimal minimum) {
+        this.minimum = minimum;
+    }
+
+    public BigDecimal getMaximum() {
+        return maximum;
+    }
+
+    public void setMaximum(BigDecimal maximum) {
+        this.maximum = maximum;
+    }
+
     public String getPattern() {
         return pattern;
     }
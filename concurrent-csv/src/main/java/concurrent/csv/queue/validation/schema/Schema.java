@@ -1,10 +1,13 @@
 package concurrent.csv.queue.validation.schema;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public class Schema {
     private String type;
     private Map<String, Property> properties;
+    private List<String> required = new ArrayList<>();
 
     // Getters and setters
     public String getType() {
@@ -22,4 +25,12 @@ public class Schema {
     public void setProperties(Map<String, Property> properties) {
         this.properties = properties;
     }
+
+    public List<String> getRequired() {
+        return required;
+    }
+
+    public void setRequired(List<String> required) {
+        this.required = required;
+    }
 }
\ No newline at end of file
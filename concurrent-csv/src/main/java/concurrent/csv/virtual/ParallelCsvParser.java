@@ -1,5 +1,11 @@
 package concurrent.csv.virtual;
 
+import concurrent.csv.queue.BufferPool;
+import concurrent.csv.queue.ExecutionModel;
+import concurrent.csv.queue.LineSequencer;
+import concurrent.csv.queue.SpeculativeSplitter;
+import concurrent.csv.queue.StructuralScanner;
+
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -15,15 +21,19 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.*;
 
 public class ParallelCsvParser {
 
-    public record CharSlice(CharBuffer buffer, int start, int end) {
+    // splits end at the first record boundary after the fixed offset, leave room for one record
+    private static final int SPLIT_SLACK = 64 * 1024;
+
+    public record CharSlice(CharBuffer buffer, int start, int end, boolean quoted) {
         public String asString() {
             CharSequence cs = buffer.subSequence(start, end);
-            return cs.toString();
+            return quoted ? unescape(cs) : cs.toString();
         }
     }
 
@@ -37,61 +47,73 @@ public class ParallelCsvParser {
             int parallelism,
             CsvLineConsumer consumer
     ) throws IOException, InterruptedException {
+        parseCsvFile(file, chunkSize, parallelism, null, consumer);
+    }
+
+    /**
+     * Parses only the given columns, the consumer receives them in column order. The remaining fields of a line are
+     * not materialised and a line is not scanned beyond its last projected column.
+     */
+    public static void parseCsvFile(
+            Path file,
+            int chunkSize,
+            int parallelism,
+            int[] columns,
+            CsvLineConsumer consumer
+    ) throws IOException, InterruptedException {
 
-        ExecutorService processorPool = Executors.newVirtualThreadPerTaskExecutor();
+        ExecutorService processorPool = ExecutionModel.FORK_JOIN.newExecutor(parallelism);
         FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
         long fileSize = channel.size();
+        // chunks are decoded before the consumer sees them, so a buffer can be recycled as soon as its task is done
+        BufferPool bufferPool = new BufferPool(chunkSize + SPLIT_SLACK, parallelism * 2);
 
         List<CompletableFuture<Void>> tasks = new ArrayList<>();
-        long position = 0;
-        ByteBuffer leftover = ByteBuffer.allocate(0);
-        long lineNumber = 0;
-
-        while (position < fileSize) {
-            int readSize = (int) Math.min(chunkSize, fileSize - position);
-            int leftoverSize = leftover.remaining();
-            ByteBuffer buffer = ByteBuffer.allocate(leftoverSize + readSize);
-
-            leftover.flip();
-            buffer.put(leftover);
-
-            int bytesRead = channel.read(buffer, position);
-            buffer.flip();
-
-            int lastCsvBoundary = findLastCompleteCsvRecord(buffer);
-            if (lastCsvBoundary == -1) {
-                leftover = buffer;
-                position += readSize;
-                continue;
+        // every worker counts its own chunk, the sequencer turns the counts into the first line number of each chunk
+        LineSequencer lines = new LineSequencer(0);
+        boolean[] projection = projection(columns);
+
+        for (SpeculativeSplitter.Split split : SpeculativeSplitter.split(channel, fileSize, chunkSize, processorPool)) {
+            BufferPool.Lease lease = split.length() <= bufferPool.getBufferSize() ? bufferPool.acquire() : null;
+            ByteBuffer buffer = lease != null ? lease.buffer().limit(split.length()) : ByteBuffer.allocate(split.length());
+            while (buffer.hasRemaining() && channel.read(buffer, split.start() + buffer.position()) != -1) {
             }
+            buffer.flip();
 
-            ByteBuffer toProcess = buffer.slice(0, lastCsvBoundary);
-            leftover = buffer.slice(lastCsvBoundary, buffer.limit() - lastCsvBoundary);
-
-            final long currentLineNumber = lineNumber;
-            final ByteBuffer chunkCopy = toProcess.asReadOnlyBuffer();
-
-            tasks.add(CompletableFuture.runAsync(() -> {
-                processChunk(chunkCopy, currentLineNumber, consumer);
-            }, processorPool));
-
-            position += readSize;
-            lineNumber += countCsvLines(toProcess);
-        }
+            final LineSequencer.Slot slot = lines.next();
+            final ByteBuffer chunkCopy = buffer.asReadOnlyBuffer();
 
-        if (leftover.remaining() > 0) {
-            final long currentLineNumber = lineNumber;
-            final ByteBuffer finalLeftover = leftover.asReadOnlyBuffer();
             tasks.add(CompletableFuture.runAsync(() -> {
-                processChunk(finalLeftover, currentLineNumber, consumer);
-            }, processorPool));
+                try {
+                    slot.publish(countCsvLines(chunkCopy));
+                    processChunk(chunkCopy, slot.firstLineNumber(), projection, consumer);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException(e);
+                } finally {
+                    if (lease != null) lease.release();
+                }
+            }, processorPool).whenComplete((ignored, failure) -> {
+                if (failure != null) lines.abort(failure);
+            }));
         }
 
         CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
         processorPool.shutdown();
     }
 
-    private static void processChunk(ByteBuffer chunk, long startLineNumber, CsvLineConsumer consumer) {
+    private static boolean[] projection(int[] columns) {
+        if (columns == null) {
+            return null;
+        }
+        boolean[] projection = new boolean[Arrays.stream(columns).max().orElse(-1) + 1];
+        for (int column : columns) {
+            projection[column] = true;
+        }
+        return projection;
+    }
+
+    private static void processChunk(ByteBuffer chunk, long startLineNumber, boolean[] projection, CsvLineConsumer consumer) {
         CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
                 .onMalformedInput(CodingErrorAction.REPLACE)
                 .onUnmappableCharacter(CodingErrorAction.REPLACE);
@@ -120,21 +142,22 @@ public class ParallelCsvParser {
             }
             if (c == '\n' && !inQuotes) {
                 int end = (i > charBuffer.position() && charBuffer.get(i - 1) == '\r') ? i - 1 : i;
-                fieldCount = parseCsvLine(charBuffer, start, end, fields);
+                fieldCount = parseCsvLine(charBuffer, start, end, fields, projection);
                 consumer.accept(fields, 0, fieldCount, line++);
                 start = i + 1;
             }
         }
         if (start < charBuffer.limit()) {
-            fieldCount = parseCsvLine(charBuffer, start, charBuffer.limit(), fields);
+            fieldCount = parseCsvLine(charBuffer, start, charBuffer.limit(), fields, projection);
             consumer.accept(fields, 0, fieldCount, line);
         }
     }
 
-    private static int parseCsvLine(CharBuffer buffer, int from, int to, CharSlice[] fields) {
+    private static int parseCsvLine(CharBuffer buffer, int from, int to, CharSlice[] fields, boolean[] projection) {
         int start = from;
         boolean inQuotes = false;
         int fieldIndex = 0;
+        int column = 0;
 
         for (int i = from; i <= to; i++) {
             boolean atEnd = i == to;
@@ -149,7 +172,13 @@ public class ParallelCsvParser {
             }
             if ((c == ',' && !inQuotes) || atEnd) {
                 int fieldEnd = i;
-                fields[fieldIndex++] = unquote(buffer, start, fieldEnd);
+                if (projection == null || column < projection.length && projection[column]) {
+                    fields[fieldIndex++] = unquote(buffer, start, fieldEnd);
+                }
+                if (projection != null && ++column == projection.length) {
+                    // nothing projected beyond this column
+                    break;
+                }
                 start = i + 1;
             }
         }
@@ -158,36 +187,30 @@ public class ParallelCsvParser {
 
     private static CharSlice unquote(CharBuffer buffer, int start, int end) {
         if (end - start >= 2 && buffer.get(start) == '"' && buffer.get(end - 1) == '"') {
-            return new CharSlice(buffer, start + 1, end - 1);
+            return new CharSlice(buffer, start + 1, end - 1, true);
         }
-        return new CharSlice(buffer, start, end);
+        return new CharSlice(buffer, start, end, false);
     }
 
-    private static int countCsvLines(ByteBuffer buffer) {
-        boolean inQuotes = false;
-        int count = 0;
-        for (int i = buffer.position(); i < buffer.limit(); i++) {
-            byte b = buffer.get(i);
-            if (b == '"') {
-                if (inQuotes && i + 1 < buffer.limit() && buffer.get(i + 1) == '"') {
-                    i++;
-                } else {
-                    inQuotes = !inQuotes;
+    private static String unescape(CharSequence quoted) {
+        StringBuilder sb = null;
+        for (int i = 0; i < quoted.length(); i++) {
+            char c = quoted.charAt(i);
+            if (c == '"' && i + 1 < quoted.length() && quoted.charAt(i + 1) == '"') {
+                if (sb == null) {
+                    sb = new StringBuilder(quoted.length()).append(quoted, 0, i);
                 }
+                i++;
+            }
+            if (sb != null) {
+                sb.append(c);
             }
-            if (b == '\n' && !inQuotes) count++;
         }
-        return count;
+        return sb == null ? quoted.toString() : sb.toString();
     }
 
-    private static int findLastCompleteCsvRecord(ByteBuffer buffer) {
-        boolean inQuotes = false;
-        for (int i = buffer.limit() - 1; i >= buffer.position(); i--) {
-            byte b = buffer.get(i);
-            if (b == '"') inQuotes = !inQuotes;
-            if (b == '\n' && !inQuotes) return i + 1;
-        }
-        return -1;
+    private static int countCsvLines(ByteBuffer buffer) {
+        return StructuralScanner.get().countRecords(buffer, buffer.position(), buffer.limit());
     }
 
     public static void main(String[] args) throws Exception {
@@ -0,0 +1,78 @@
+package concurrent.csv.queue;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColumnarRowsTest {
+
+    private static final Pattern LINE_BREAK = Pattern.compile("\r\n|\r|\n");
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "a,\"x\ny\",b\nc,d\n",
+            "a,\"x\ry\",b\rc,d\re,\"\r\r\",f\r",
+            "a,\"x\r\ny\",b\r\nc,d\r\ne,\"\r\n\n\r\",f\r\n",
+            "a,\"x\ry\nz\r\n\",b\nc\r\"\n\"\r\nd",
+            "\"\r\"\r\"\r\"\r\"\r\"",
+    })
+    void lineBreaksBeforeEndRowsLikeTheTokenizer(String input) {
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        StructuralIndex index = StructuralScanner.get().index(buffer, 0, bytes.length, new StructuralIndex(0));
+        ColumnarRows rows = tokenize(buffer, index);
+        rows.countLineBreaks(buffer, 0, index.quotedLineBreaks());
+
+        for (int row = 0; row < rows.rowCount(); row++) {
+            assertEquals(lineBreaks(input.substring(0, rows.rowStart(row))),
+                    rows.recordOrdinal(row) + rows.lineBreaksBefore(row), "row " + row);
+        }
+        int lastBreak = input.endsWith("\r") || input.endsWith("\n") ? 1 : 0;
+        assertEquals(lineBreaks(input) - lastBreak + 1, rows.recordCount() + index.quotedLineBreaks());
+    }
+
+    // the row splitting of ChunkedFileProcessor.parse, without filters
+    private static ColumnarRows tokenize(ByteBuffer buffer, StructuralIndex index) {
+        ColumnarRows rows = new ColumnarRows(4, 4);
+        int lineStart = 0;
+        int fieldStart = 0;
+        int lastReturn = -2;
+        for (int k = 0; k < index.size(); k++) {
+            int i = index.get(k);
+            byte b = buffer.get(i);
+            if (b == ',') {
+                rows.addField(fieldStart, i);
+            } else if (b == '\n' && i == lastReturn + 1) {
+                lineStart = i + 1;
+            } else {
+                if (b == '\r') {
+                    lastReturn = i;
+                }
+                rows.addField(fieldStart, i);
+                rows.endRow(lineStart, i);
+                lineStart = i + 1;
+            }
+            fieldStart = i + 1;
+        }
+        if (fieldStart < buffer.limit() || lineStart < fieldStart) {
+            rows.addField(fieldStart, buffer.limit());
+            rows.endRow(lineStart, buffer.limit());
+        }
+        return rows;
+    }
+
+    private static int lineBreaks(String text) {
+        int count = 0;
+        Matcher matcher = LINE_BREAK.matcher(text);
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+}
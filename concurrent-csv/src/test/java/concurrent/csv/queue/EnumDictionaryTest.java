@@ -0,0 +1,109 @@
+package concurrent.csv.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EnumDictionaryTest {
+
+    @Test
+    void ordinalsFollowTheOrderOfTheValues() {
+        Set<String> values = new LinkedHashSet<>(List.of("Card payment", "Bank transfer", "Direct debit", "", "é"));
+        EnumDictionary dictionary = new EnumDictionary(values);
+
+        assertEquals(List.copyOf(values), dictionary.values());
+        assertOrdinals(dictionary, List.copyOf(values));
+        assertOrdinals(new EnumDictionary(values), List.copyOf(values));
+    }
+
+    @Test
+    void valuesAgreeingInLengthAndSampledBytes() {
+        // first, middle and last byte are the same, only hashing every byte tells these apart
+        List<String> values = List.of("AaXxB", "AbXxB", "AcXxB", "AaXyB", "AbXyB");
+        EnumDictionary dictionary = new EnumDictionary(values);
+
+        assertOrdinals(dictionary, values);
+        assertEquals(-1, ordinal(dictionary, "AdXxB"));
+        assertEquals(-1, ordinal(dictionary, "AaXzB"));
+    }
+
+    @Test
+    void nonMembersInOccupiedSlots() {
+        // non-members of the same length and sampled bytes as a member end up in the slot of that member
+        List<String> values = List.of("Card payment", "Bank transfer", "Direct debit");
+        EnumDictionary dictionary = new EnumDictionary(values);
+
+        assertEquals(-1, ordinal(dictionary, "Cxrd payment"));
+        assertEquals(-1, ordinal(dictionary, "Bank trxnsfer"));
+        assertEquals(-1, ordinal(dictionary, "Direct debiT"));
+        assertEquals(-1, ordinal(dictionary, "card payment"));
+        assertEquals(-1, ordinal(dictionary, "Card payments"));
+        assertEquals(-1, ordinal(dictionary, ""));
+    }
+
+    @Test
+    void manyValues() {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            values.add("V" + i);
+        }
+        EnumDictionary dictionary = new EnumDictionary(values);
+
+        assertOrdinals(dictionary, values);
+        Random random = new Random(11);
+        for (int i = 0; i < 10_000; i++) {
+            String candidate = "V" + (1000 + random.nextInt(100_000));
+            assertEquals(-1, ordinal(dictionary, candidate), candidate);
+        }
+    }
+
+    @Test
+    void singleValue() {
+        EnumDictionary dictionary = new EnumDictionary(List.of("only"));
+
+        assertEquals(1, dictionary.size());
+        assertEquals(0, ordinal(dictionary, "only"));
+        assertEquals(-1, ordinal(dictionary, "onlY"));
+        assertEquals(-1, ordinal(dictionary, "on"));
+        assertEquals(-1, ordinal(dictionary, ""));
+    }
+
+    @Test
+    void empty() {
+        EnumDictionary dictionary = new EnumDictionary(List.of());
+
+        assertEquals(0, dictionary.size());
+        assertEquals(-1, ordinal(dictionary, ""));
+        assertEquals(-1, ordinal(dictionary, "anything"));
+    }
+
+    @Test
+    void duplicateValues() {
+        assertThrows(IllegalArgumentException.class, () -> new EnumDictionary(List.of("a", "b", "a")));
+    }
+
+    private static void assertOrdinals(EnumDictionary dictionary, List<String> values) {
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(i, ordinal(dictionary, values.get(i)), values.get(i));
+            assertEquals(values.get(i), dictionary.value(i));
+        }
+    }
+
+    // looks the value up inside a larger buffer, as fields sit in a chunk
+    private static int ordinal(EnumDictionary dictionary, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 2).put((byte) ',').put(bytes).put((byte) ',');
+        int byBuffer = dictionary.ordinal(buffer, 1, bytes.length + 1);
+        assertEquals(byBuffer, dictionary.ordinal(new ByteSlice(buffer, 1, bytes.length + 1)));
+        return byBuffer;
+    }
+}
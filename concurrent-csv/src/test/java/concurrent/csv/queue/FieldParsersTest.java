@@ -0,0 +1,76 @@
+package concurrent.csv.queue;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FieldParsersTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            // leap days
+            "2024-02-29T00:00:00Z,           true",
+            "2000-02-29T12:00:00,            true",
+            "2023-02-29T00:00:00Z,           false",
+            "1900-02-29T00:00:00Z,           false",
+            "2023-02-28T23:59:59.999Z,       true",
+            // calendar and clock ranges
+            "2024-04-30T00:00:00Z,           true",
+            "2024-04-31T00:00:00Z,           false",
+            "2024-12-31T23:59:59Z,           true",
+            "2024-13-01T00:00:00Z,           false",
+            "2024-00-10T00:00:00Z,           false",
+            "2024-01-00T00:00:00Z,           false",
+            "2024-01-01T24:00:00Z,           false",
+            "2024-01-01T23:60:00Z,           false",
+            "2024-01-01T00:00:60Z,           false",
+            "0001-01-01T00:00:00Z,           true",
+            "1969-12-31T23:59:59.999Z,       true",
+            // offsets up to 18 hours either way
+            "2024-06-30T12:00:00+18:00,      true",
+            "2024-06-30T12:00:00-18:00,      true",
+            "2024-06-30T12:00:00+18:01,      false",
+            "2024-06-30T12:00:00-18:01,      false",
+            "2024-06-30T12:00:00+19:00,      false",
+            "2024-06-30T12:00:00-05:30,      true",
+            "2024-06-30T12:00:00+05:60,      false",
+            "2024-06-30T12:00:00+0100,       false",
+            // fractions of one to nine digits
+            "2024-06-30T12:00:00.1+01:00,    true",
+            "2024-06-30T12:00:00.123456789Z, true",
+            "2024-06-30T12:00:00.1234567890Z, false",
+            "2024-06-30T12:00:00.Z,          false",
+            // layout
+            "2024-06-30 12:00:00,            false",
+            "2024-06-30T12:00,               false",
+            "2024-06-30T12:00:00ZZ,          false",
+            "2024-6-30T12:00:00Z,            false",
+    })
+    void epochMillis(String value, boolean valid) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 1).put((byte) ',').put(bytes);
+        long millis = FieldParsers.tryParseEpochMillis(buffer, 1, bytes.length + 1);
+        if (valid) {
+            assertEquals(reference(value), millis, value);
+            assertEquals(millis, FieldParsers.parseEpochMillis(buffer, 1, bytes.length + 1), value);
+        } else {
+            assertEquals(FieldParsers.INVALID_DATE_TIME, millis, value);
+            assertThrows(DateTimeException.class, () -> FieldParsers.parseEpochMillis(buffer, 1, bytes.length + 1));
+        }
+    }
+
+    private static long reference(String value) {
+        return value.length() == 19
+                ? LocalDateTime.parse(value).toInstant(ZoneOffset.UTC).toEpochMilli()
+                : OffsetDateTime.parse(value).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,76 @@
+package concurrent.csv.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RowCursorTest {
+
+    @Test
+    void columnsOfTheRow() {
+        RowCursor cursor = cursor(null, "12,\"a\"\"b\",true", "7");
+
+        assertTrue(cursor.next());
+        assertTrue(cursor.hasField(0) && cursor.hasField(2));
+        assertEquals(12, cursor.getLong(0));
+        assertEquals("a\"b", cursor.getString(1));
+        assertTrue(cursor.getBoolean(2));
+        assertFalse(cursor.hasField(3));
+        assertFalse(cursor.hasField(-1));
+    }
+
+    @Test
+    void columnMissingFromTheRow() {
+        RowCursor cursor = cursor(null, "12,x,true", "7");
+        cursor.next();
+        cursor.next();
+
+        assertFalse(cursor.hasField(1));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> cursor.getString(1));
+        assertEquals("Column 1 is missing from the row on line 2, which has 1 field(s)", e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> cursor.getLong(2));
+        assertThrows(IllegalArgumentException.class, () -> cursor.getBytes(1, new byte[8]));
+        assertThrows(IllegalArgumentException.class, () -> cursor.isEmpty(1));
+        assertThrows(IllegalArgumentException.class, () -> cursor.getText(-1, new ByteSlice()));
+    }
+
+    @Test
+    void columnRemovedByTheProjection() {
+        RowCursor cursor = cursor(new boolean[]{true, false, true}, "12,x,true");
+        cursor.next();
+
+        assertFalse(cursor.hasField(1));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> cursor.getString(1));
+        assertEquals("Column 1 was removed by the projection", e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> cursor.contentStart(1));
+        assertEquals(12, cursor.getLong(0));
+        assertTrue(cursor.getBoolean(2));
+    }
+
+    private static RowCursor cursor(boolean[] projection, String... lines) {
+        ColumnarRows rows = new ColumnarRows(lines.length, 3, projection);
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            int lineStart = text.length();
+            text.append(line);
+            int fieldStart = lineStart;
+            for (int i = lineStart; i < text.length(); i++) {
+                if (text.charAt(i) == ',') {
+                    rows.addField(fieldStart, i);
+                    fieldStart = i + 1;
+                }
+            }
+            rows.addField(fieldStart, text.length());
+            rows.endRow(lineStart, text.length());
+            text.append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.US_ASCII));
+        return new RowCursor().reset(rows, buffer);
+    }
+}
@@ -0,0 +1,152 @@
+package concurrent.csv.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the SWAR and the Vector API scanner against a byte by byte tokenizer, on inputs that put quotes, escaped
+ * quotes and line breaks on both sides of block and lane boundaries.
+ */
+class StructuralScannerTest {
+
+    private static final byte[] ALPHABET = {'"', ',', '\n', '\r', 'a', 'b', (byte) 0xC3, (byte) 0xA9};
+
+    private static final String[] SAMPLES = {
+            "",
+            "a",
+            "a,b,c\n",
+            "a,\"b,c\",d\r\ne,f\r\n",
+            "\"say \"\"hi\"\"\",x\n",
+            "\"multi\nline\",\"cr\rinside\"\r\nlast",
+            "\"\"\"\",\"\",\n",
+            "x,\"unterminated\n,still,quoted",
+    };
+
+    private static List<StructuralScanner> scanners() {
+        return List.of(new SwarStructuralScanner(), new VectorStructuralScanner());
+    }
+
+    @Test
+    void blockMasksMatchScalarLoad() {
+        for (StructuralScanner scanner : scanners()) {
+            for (byte[] input : inputs()) {
+                for (ByteBuffer buffer : buffers(input)) {
+                    StructuralScanner.BlockReader block = scanner.reader(buffer);
+                    for (int offset = 0; offset + StructuralScanner.BLOCK <= input.length; offset += 7) {
+                        block.load(offset);
+                        long[] loaded = {block.quotes, block.delimiters, block.newlines, block.returns};
+                        block.loadTail(offset, offset + StructuralScanner.BLOCK);
+                        long[] scalar = {block.quotes, block.delimiters, block.newlines, block.returns};
+                        int at = offset;
+                        assertArrayEquals(scalar, loaded, () -> scanner.getClass().getSimpleName() + " at " + at);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void indexMatchesScalarTokenizer() {
+        for (StructuralScanner scanner : scanners()) {
+            for (byte[] input : inputs()) {
+                for (ByteBuffer buffer : buffers(input)) {
+                    for (int from = 0; from <= Math.min(3, input.length); from++) {
+                        Reference expected = Reference.scan(input, from, input.length);
+                        StructuralIndex index = scanner.index(buffer, from, input.length, new StructuralIndex(0));
+                        int[] positions = new int[index.size()];
+                        for (int i = 0; i < positions.length; i++) {
+                            positions[i] = index.get(i);
+                        }
+                        String context = scanner.getClass().getSimpleName() + " length " + input.length + " from " + from;
+                        assertArrayEquals(expected.positions(), positions, context);
+                        assertEquals(expected.quotedLineBreaks(), index.quotedLineBreaks(), context);
+                        assertEquals(expected.records(), scanner.countRecords(buffer, from, input.length), context);
+                        assertEquals(expected.lastRecordEnd(), scanner.lastRecordEnd(buffer, from, input.length), context);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void escapedQuotesAcrossBlockBoundary() {
+        // the two quotes of "" sit in different blocks, the field stays quoted across the boundary
+        String input = "\"" + "x".repeat(62) + "\"\"" + ",\n" + "y".repeat(10) + "\",z\r\n";
+        byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+        Reference expected = Reference.scan(bytes, 0, bytes.length);
+        for (StructuralScanner scanner : scanners()) {
+            StructuralIndex index = scanner.index(ByteBuffer.wrap(bytes), 0, bytes.length, new StructuralIndex(0));
+            assertEquals(3, index.size());
+            assertEquals(input.indexOf(",z"), index.get(0));
+            assertEquals(input.length() - 2, index.get(1));
+            assertEquals(input.length() - 1, index.get(2));
+            assertEquals(1, index.quotedLineBreaks());
+            assertEquals(expected.lastRecordEnd(), scanner.lastRecordEnd(ByteBuffer.wrap(bytes), 0, bytes.length));
+        }
+    }
+
+    private static List<byte[]> inputs() {
+        List<byte[]> inputs = new ArrayList<>();
+        for (String sample : SAMPLES) {
+            inputs.add(sample.getBytes(StandardCharsets.UTF_8));
+        }
+        Random random = new Random(42);
+        // lengths around one and two blocks and around every lane width
+        int[] lengths = {1, 15, 17, 31, 33, 63, 64, 65, 100, 127, 128, 129, 191, 257, 1000};
+        for (int length : lengths) {
+            for (int i = 0; i < 4; i++) {
+                byte[] input = new byte[length];
+                for (int k = 0; k < length; k++) {
+                    // mostly plain bytes, so quoted and unquoted stretches both get long
+                    input[k] = random.nextInt(4) == 0 ? ALPHABET[random.nextInt(4)] : ALPHABET[4 + random.nextInt(4)];
+                }
+                inputs.add(input);
+            }
+        }
+        return inputs;
+    }
+
+    private static List<ByteBuffer> buffers(byte[] input) {
+        ByteBuffer direct = ByteBuffer.allocateDirect(input.length).put(input).flip();
+        return List.of(ByteBuffer.wrap(input), direct);
+    }
+
+    /**
+     * Byte by byte tokenizer, every quote toggles the quoted state.
+     */
+    private record Reference(int[] positions, int quotedLineBreaks, int records, int lastRecordEnd) {
+
+        static Reference scan(byte[] input, int from, int to) {
+            List<Integer> positions = new ArrayList<>();
+            boolean quoted = false;
+            int quotedLineBreaks = 0;
+            int records = 0;
+            int lastRecordEnd = -1;
+            for (int i = from; i < to; i++) {
+                byte b = input[i];
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (quoted) {
+                    // a lone \r and \r\n are one line break each, like the tokenizer ends rows
+                    if (b == '\r' || b == '\n' && (i == from || input[i - 1] != '\r')) quotedLineBreaks++;
+                } else if (b == ',' || b == '\n' || b == '\r') {
+                    positions.add(i);
+                    if (b == '\n') {
+                        records++;
+                        lastRecordEnd = i + 1;
+                    }
+                }
+            }
+            return new Reference(positions.stream().mapToInt(Integer::intValue).toArray(), quotedLineBreaks, records,
+                    lastRecordEnd);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package concurrent.csv.queue.validation;
+
+import concurrent.csv.queue.ByteSlice;
+import concurrent.csv.queue.validation.schema.Property;
+import concurrent.csv.queue.validation.schema.Schema;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs patterns through the byte DFA and through {@link Pattern} and expects the same verdict for every input.
+ */
+class BytePatternTest {
+
+    private static final String[] SAMPLES = {
+            "", "a", "b", "ab", "abc", "abcd", "aaa", "aaaa", "ABC", "ABCD", "AB", "abC", "USD", "usd",
+            "12", "123", "12345", "2024-02-29T10:15:30Z", "a.c", "a\nc", "abbcd", "acd",
+            "colour", "color", "x-y", "-", "]", " \t x", "name@host.org", "name@host.c",
+            "é", "aé", "ÄBC", "€", "😀", "a c", "a\u0085c",
+    };
+
+    private static final String ALPHABET = "aAbzZ09_-.,:@ \t\n\r\"é€😀";
+
+    @Test
+    void schemaPatterns() {
+        int patterns = 0;
+        for (Schema schema : CsvSchemaLoader.loadSchema("schema.yaml").getComponents().getSchemas().values()) {
+            for (Property property : schema.getProperties().values()) {
+                if (property.getPattern() != null) {
+                    assertTrue(BytePattern.compile(property.getPattern()).isCompiled(), property.getPattern());
+                    assertAgrees(property.getPattern());
+                    patterns++;
+                }
+            }
+        }
+        assertTrue(patterns > 0);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "^[A-Z]{3}$", "[a-z]+", "[^a-z]*", "[^,\"]{0,4}", "[-a]", "[a-]", "[\\]\\-]+", "[a-cx-z0-9_]*",
+            "\\d{2,4}", "\\D+", "\\w*-\\w+", "\\W?", "\\s+\\S", "[\\w.-]+@[\\w-]+\\.[a-z]{2,3}",
+            "a|b|cd", "(ab|a)(c|bcd)", "(?:x|yz)*", "(a|)+", "a|", "(a*)*b", "colou?r",
+            "a{3}", "a{2,}", "a{0,2}", "a{1,3}?b", "(ab){2}", "a.c", ".*", ".+\\.\\*", "^$", "",
+            "^a", "a$", "[0-9]{4}-[0-9]{2}-[0-9]{2}T.*",
+    })
+    void compiledPatternAgreesWithPattern(String regex) {
+        assertTrue(BytePattern.compile(regex).isCompiled(), regex);
+        assertAgrees(regex);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"(a)\\1", "a++", "(?=a)a", "(?i)abc", "\\p{L}+", "[é]+", "a^b", "[a-z&&[^b]]+", "\\x41"})
+    void unsupportedPatternFallsBackToPattern(String regex) {
+        assertFalse(BytePattern.compile(regex).isCompiled(), regex);
+        assertAgrees(regex);
+    }
+
+    private static void assertAgrees(String regex) {
+        BytePattern bytePattern = BytePattern.compile(regex);
+        Pattern pattern = Pattern.compile(regex);
+        for (String input : inputs()) {
+            byte[] bytes = input.getBytes(StandardCharsets.UTF_8);
+            // the field sits inside a larger buffer like it does in a chunk
+            ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 2).put((byte) ',').put(bytes).put((byte) ',');
+            ByteSlice slice = new ByteSlice(buffer, 1, bytes.length + 1);
+            assertEquals(pattern.matcher(input).matches(), bytePattern.matches(slice),
+                    () -> regex + " on \"" + input + "\"");
+        }
+    }
+
+    private static List<String> inputs() {
+        List<String> inputs = new ArrayList<>(List.of(SAMPLES));
+        int[] symbols = ALPHABET.codePoints().toArray();
+        Random random = new Random(7);
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder input = new StringBuilder();
+            int length = random.nextInt(9);
+            // half of the inputs only use the first few symbols, so repetitions of the same character are common
+            int range = i % 2 == 0 ? 4 : symbols.length;
+            for (int k = 0; k < length; k++) {
+                input.appendCodePoint(symbols[random.nextInt(range)]);
+            }
+            inputs.add(input.toString());
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,112 @@
+package concurrent.csv.queue.validation;
+
+import concurrent.csv.queue.ByteSlice;
+import concurrent.csv.queue.validation.schema.Property;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColumnValidatorTest {
+
+    // precision, scale, minimum, maximum, value, expected error (empty when valid)
+    @ParameterizedTest
+    @CsvSource({
+            // signs and the shapes BigDecimal accepts
+            ",,,,          -1.5,",
+            ",,,,          +1.5,",
+            ",,,,          .5,",
+            ",,,,          -.5,",
+            ",,,,          1.,",
+            ",,,,          -1.,",
+            ",,,,          --1,            DECIMAL",
+            ",,,,          +-1,            DECIMAL",
+            ",,,,          -,              DECIMAL",
+            ",,,,          .,              DECIMAL",
+            ",,,,          -.,             DECIMAL",
+            ",,,,          1.2.3,          DECIMAL",
+            ",,,,          1e5,            DECIMAL",
+            ",,,,          ' 1',           DECIMAL",
+            ",,,,          1-,             DECIMAL",
+            // leading and trailing zeros are not significant
+            "3,  2,,,      0001.50,",
+            "3,  2,,,      1.500,",
+            "3,  2,,,      0.00,",
+            "3,  2,,,      000,",
+            "3,  2,,,      12.5,           PRECISION",
+            "3,  2,,,      1.005,          SCALE",
+            "3,  2,,,      -0.010,",
+            "3,   ,,,      100,",
+            "3,   ,,,      1000,           PRECISION",
+            "3,   ,,,      12.30,",
+            "3,   ,,,      0.00123,",
+            "3,   ,,,      0.001234,       PRECISION",
+            "3,   ,,,      1.234,          PRECISION",
+            // bounds
+            ",,  -10,  10, 10,",
+            ",,  -10,  10, -10,",
+            ",,  -10,  10, 9.99,",
+            ",,  -10,  10, 10.0000001,     MAXIMUM",
+            ",,  -10,  10, -10.0000001,    MINIMUM",
+            ",,  -10,  10, 11,             MAXIMUM",
+            ",,  0.5,    , .5,",
+            ",,  0.5,    , 0.49,           MINIMUM",
+            // equal bounds, the digits beyond the bound scale decide
+            ",,  1.5,  1.5, 1.5,",
+            ",,  1.5,  1.5, 1.50,",
+            ",,  1.5,  1.5, 1.51,          MAXIMUM",
+            ",,  1.5,  1.5, 1.49,          MINIMUM",
+            ",,  -1.5, -1.5, -1.5,",
+            ",,  -1.5, -1.5, -1.500,",
+            ",,  -1.5, -1.5, -1.51,        MINIMUM",
+            ",,  -1.5, -1.5, -1.49,        MAXIMUM",
+            // just past the long range, compared as BigDecimal
+            ",,  ,  1,     9223372036854775807,  MAXIMUM",
+            ",,  ,  1,     9223372036854775808,  MAXIMUM",
+            ",,  -1, ,     -9223372036854775809, MINIMUM",
+            ",,  , 9223372036854775807,  9223372036854775807,",
+            ",,  , 9223372036854775807,  9223372036854775808,  MAXIMUM",
+            ",,  , 99999999999999999999, 9223372036854775808,",
+            ",,  , 99999999999999999999, 99999999999999999999.5, MAXIMUM",
+            ",,  , 0.01,   92233720368547758,    MAXIMUM",
+            ",,  -0.01, ,  -92233720368547758,   MINIMUM",
+    })
+    void decimal(Integer precision, Integer scale, String minimum, String maximum, String value, ErrorCode expected) {
+        Property property = new Property();
+        property.setType("number");
+        property.setFormat("decimal");
+        property.setPrecision(precision);
+        property.setScale(scale);
+        property.setMinimum(minimum != null ? new BigDecimal(minimum) : null);
+        property.setMaximum(maximum != null ? new BigDecimal(maximum) : null);
+
+        assertEquals(expected, ColumnValidator.compile(property, false).validate(slice(value)), value);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "2024-02-29T00:00:00Z,",
+            "2023-02-29T00:00:00Z,        DATE_TIME",
+            "2024-06-30T12:00:00+18:00,",
+            "2024-06-30T12:00:00+18:01,   DATE_TIME",
+            "2024-06-30T12:00:00-18:00,",
+            "2024-06-30T12:00:00-18:01,   DATE_TIME",
+    })
+    void dateTime(String value, ErrorCode expected) {
+        Property property = new Property();
+        property.setType("string");
+        property.setFormat("date-time");
+
+        assertEquals(expected, ColumnValidator.compile(property, false).validate(slice(value)), value);
+    }
+
+    private static ByteSlice slice(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 2).put((byte) '"').put(bytes).put((byte) '"');
+        return new ByteSlice(buffer, 1, bytes.length + 1);
+    }
+}